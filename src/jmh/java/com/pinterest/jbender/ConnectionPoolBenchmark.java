@@ -0,0 +1,65 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import com.pinterest.jbender.util.ConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a {@link ConnectionPool} acquire/release pair, alone and under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConnectionPoolBenchmark {
+  private static final class NoopConnection implements Closeable {
+    @Override
+    public void close() {}
+  }
+
+  private ConnectionPool<NoopConnection> pool;
+
+  @Setup
+  public void setup() {
+    pool = new ConnectionPool<>(NoopConnection::new, 64);
+  }
+
+  @Benchmark
+  public NoopConnection acquireRelease() throws IOException, SuspendExecution {
+    return cycle();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public NoopConnection acquireReleaseContended() throws IOException, SuspendExecution {
+    return cycle();
+  }
+
+  private NoopConnection cycle() throws IOException, SuspendExecution {
+    final NoopConnection connection = pool.acquire();
+    pool.release(connection);
+    return connection;
+  }
+}
@@ -12,7 +12,10 @@ limitations under the License.
  */
 package com.pinterest.jbender;
 
+import co.paralleluniverse.fibers.DefaultFiberScheduler;
 import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.strands.channels.Channel;
 import co.paralleluniverse.strands.channels.Channels;
@@ -21,48 +24,116 @@ import com.pinterest.jbender.events.recording.HdrHistogramRecorder;
 import com.pinterest.jbender.executors.NoopRequestExecutor;
 import com.pinterest.jbender.executors.RequestExecutor;
 import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
-import com.pinterest.jbender.intervals.IntervalGenerator;
+import com.pinterest.jbender.util.ListReceivePort;
 import org.HdrHistogram.Histogram;
 import org.openjdk.jmh.annotations.Benchmark;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.pinterest.jbender.events.recording.Recorder.record;
 
+/**
+ * Per-request overhead of the load tester itself, measured with a {@link NoopRequestExecutor} so
+ * that nothing but dispatching, event delivery and recording is timed.
+ *
+ * Scores are in requests per second; with {@code -prof gc} the normalized allocation rate is the
+ * number of bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
 public class JBenderBenchmark {
+  private static final int REQUESTS = 10000;
+  private static final int CONCURRENCY = 64;
 
-  // @Benchmark
-  public Histogram loadtestThroughput() throws SuspendExecution, InterruptedException, ExecutionException {
-    final IntervalGenerator intervalGenerator = new ConstantIntervalGenerator(1000);
-    final RequestExecutor<String, Void> requestExecutor = new NoopRequestExecutor<>();
+  private final RequestExecutor<String, Void> requestExecutor = new NoopRequestExecutor<>();
+  private FiberForkJoinScheduler singleCore;
+  private PartitionedLoadTest partitioned;
 
-    final Channel<String> requestCh = Channels.newChannel(10000);
-    final Channel<TimingEvent<Void>> eventCh = Channels.newChannel(10000);
+  @Setup
+  public void setup() {
+    singleCore = new FiberForkJoinScheduler("jbender-bench-single", 1);
+    partitioned = new PartitionedLoadTest();
+  }
 
-    // Requests generator
-    new Fiber<Void>("req-gen", () -> {
-      // Bench handling 10k reqs
-      for (int i = 0; i < 10000; ++i) {
-        requestCh.send("message");
-      }
+  @TearDown
+  public void tearDown() {
+    singleCore.getForkJoinPool().shutdown();
+    partitioned.close();
+  }
+
+  /**
+   * Dispatches requests as fast as the throughput loop allows (no interval between requests).
+   */
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public Histogram loadtestThroughput() throws InterruptedException, ExecutionException {
+    return run(true, DefaultFiberScheduler.getInstance());
+  }
 
-      requestCh.close();
-    }).start();
+  /**
+   * Like {@link #loadtestThroughput()}, but with all fibers on a single carrier thread: the score
+   * is the maximum rate a single core can generate.
+   */
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public Histogram loadtestThroughputSingleCore() throws InterruptedException, ExecutionException {
+    return run(true, singleCore);
+  }
 
-    final Histogram histogram = new Histogram(3600000000L, 3);
+  /**
+   * Like {@link #loadtestThroughput()}, split into one single-threaded partition per core: compared
+   * with {@link #loadtestThroughputSingleCore()}, shows how throughput scales with cores.
+   */
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public List<HdrHistogramRecorder> loadtestThroughputPartitioned() throws InterruptedException, ExecutionException {
+    final int partitionRequests = REQUESTS / partitioned.partitions();
+    return partitioned.loadTestThroughput(
+        qps -> new ConstantIntervalGenerator(0), 0, 0,
+        i -> new ListReceivePort<>(Collections.singletonList("message"), partitionRequests), requestExecutor,
+        () -> new HdrHistogramRecorder(new Histogram(3600000000L, 3), 1000));
+  }
 
-    // Event recording, both HistHDR and logging
-    record(eventCh, new HdrHistogramRecorder(histogram, 1000000));
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public Histogram loadtestConcurrency() throws InterruptedException, ExecutionException {
+    return run(false, DefaultFiberScheduler.getInstance());
+  }
 
-    // Main
-    new Fiber<Void>("jbender", () -> {
-      JBender.loadTestThroughput(intervalGenerator, 0, requestCh, requestExecutor, eventCh);
+  private Histogram run(final boolean throughput, final FiberScheduler scheduler)
+          throws InterruptedException, ExecutionException
+  {
+    final ListReceivePort<String> requests = new ListReceivePort<>(Collections.singletonList("message"), REQUESTS);
+    final Channel<TimingEvent<Void>> eventCh = Channels.newChannel(10000);
+
+    final HdrHistogramRecorder recorder = new HdrHistogramRecorder(new Histogram(3600000000L, 3), 1000);
+    final Fiber<Void> recording = record("jbender-bench-recorder", scheduler, eventCh, recorder::record);
+
+    new Fiber<Void>("jbender", scheduler, () -> {
+      if (throughput) {
+        JBender.loadTestThroughput(new LoadControl(new ConstantIntervalGenerator(0)), 0, requests,
+                                   requestExecutor, eventCh, scheduler);
+      } else {
+        JBender.loadTestConcurrency(new LoadControl(CONCURRENCY), 0, requests,
+                                    requestExecutor, eventCh, scheduler);
+      }
       eventCh.close();
     }).start().join();
+    recording.join();
 
     // Avoid code elimination
-    return histogram;
+    return recorder.histogram;
   }
 }
@@ -21,22 +21,46 @@ import com.pinterest.jbender.events.recording.HdrHistogramRecorder;
 import com.pinterest.jbender.executors.http.FiberApacheHttpClientRequestExecutor;
 import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
 import com.pinterest.jbender.intervals.IntervalGenerator;
+import com.pinterest.jbender.servers.HttpEchoServer;
+import com.pinterest.jbender.servers.ServiceTime;
 import org.HdrHistogram.Histogram;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.pinterest.jbender.events.recording.Recorder.record;
 
 /**
- * Sample HTTP benchmark against {@url https://github.com/puniverse/comsat-gradle-template}
+ * Sample HTTP benchmark against an embedded echo server with a 1ms service time.
  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
 public class JBenderHttpBenchmark {
+  private HttpEchoServer server;
+
+  @Setup
+  public void setup() throws IOException {
+    server = new HttpEchoServer(0, ServiceTime.constant(1, TimeUnit.MILLISECONDS));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    server.close();
+  }
 
   @Benchmark
   public Histogram loadtestHttpThroughput() throws SuspendExecution, InterruptedException, ExecutionException, IOException {
@@ -59,7 +83,7 @@ public class JBenderHttpBenchmark {
       new Fiber<Void>("req-gen", () -> {
         // Bench handling 1k reqs
         for (int i = 0; i < 1000; ++i) {
-          requestCh.send(new HttpGet("http://localhost:8080/hello-world"));
+          requestCh.send(new HttpGet("http://localhost:" + server.port() + "/hello-world"));
         }
 
         requestCh.close();
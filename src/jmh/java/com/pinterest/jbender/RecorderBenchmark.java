@@ -0,0 +1,108 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.HdrHistogramRecorder;
+import com.pinterest.jbender.metrics.MetricsRecorder;
+import org.HdrHistogram.Histogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the event path: TimingEvents through a channel and into the recorders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecorderBenchmark {
+  private static final int EVENTS = 10000;
+
+  private final TimingEvent<Void> event = new TimingEvent<>(1000, 2000000, 0, null);
+
+  private HdrHistogramRecorder hdrHistogramRecorder;
+  private MetricsRecorder metricsRecorder;
+
+  @Setup
+  public void setup() {
+    hdrHistogramRecorder = new HdrHistogramRecorder(new Histogram(3600000000L, 3), 1000);
+    metricsRecorder = new MetricsRecorder(new LoadControl(1), 1000);
+  }
+
+  @TearDown
+  public void tearDown() {
+    metricsRecorder.close();
+  }
+
+  /**
+   * Events sent by one fiber and received by another, as between the load test and its recorder.
+   */
+  @Benchmark
+  @OperationsPerInvocation(EVENTS)
+  public long eventChannel() throws InterruptedException, ExecutionException {
+    final Channel<TimingEvent<Void>> eventCh = Channels.newChannel(10000);
+
+    final Fiber<Long> receiver = new Fiber<Long>("receiver", () -> {
+      long received = 0;
+      while (eventCh.receive() != null) {
+        ++received;
+      }
+      return received;
+    }).start();
+
+    new Fiber<Void>("sender", () -> {
+      for (int i = 0; i < EVENTS; ++i) {
+        eventCh.send(event);
+      }
+      eventCh.close();
+    }).start().join();
+
+    return receiver.get();
+  }
+
+  @Benchmark
+  public HdrHistogramRecorder hdrHistogramRecorder() {
+    hdrHistogramRecorder.record(event);
+    return hdrHistogramRecorder;
+  }
+
+  @Benchmark
+  public MetricsRecorder metricsRecorder() {
+    metricsRecorder.record(event);
+    return metricsRecorder;
+  }
+
+  /**
+   * The MetricsRecorder is wait-free and meant to be shared by several recording strands.
+   */
+  @Benchmark
+  @Threads(4)
+  public MetricsRecorder metricsRecorderContended() {
+    metricsRecorder.record(event);
+    return metricsRecorder;
+  }
+}
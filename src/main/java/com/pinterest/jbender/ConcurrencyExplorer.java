@@ -0,0 +1,238 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.DefaultFiberScheduler;
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import co.paralleluniverse.strands.channels.ReceivePort;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import com.pinterest.jbender.executors.RequestExecutor;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the concurrency a service sustains best, in a single concurrency load test whose limit is
+ * raised step by step.
+ *
+ * Each level runs for a fixed time; its throughput and latency are measured after a settling
+ * period, so that requests started at the previous level do not count. By Little's law, requests
+ * in flight equal throughput times latency: once the service saturates, more concurrency only
+ * queues, and latency grows while throughput stays flat. Exploration stops after two consecutive
+ * levels fail to beat the best throughput so far by a threshold, and the knee reported is the
+ * level with the highest power (throughput divided by mean latency).
+ */
+public class ConcurrencyExplorer {
+  /**
+   * Throughput and latency measured at one concurrency level.
+   */
+  public static final class Level {
+    public final int concurrency;
+    /** Completed requests per second. */
+    public final double throughput;
+    /** Request latencies, in nanoseconds. */
+    public final Histogram latency;
+    public final long errors;
+
+    Level(final int concurrency, final double throughput, final Histogram latency, final long errors) {
+      this.concurrency = concurrency;
+      this.throughput = throughput;
+      this.latency = latency;
+      this.errors = errors;
+    }
+
+    /**
+     * @return the mean number of requests in flight by Little's law: throughput times mean latency.
+     */
+    public double inFlight() {
+      return throughput * latency.getMean() / 1e9;
+    }
+
+    /**
+     * @return throughput divided by mean latency in seconds, highest at the knee of the curve.
+     */
+    public double power() {
+      return latency.getTotalCount() == 0 ? 0 : throughput / (latency.getMean() / 1e9);
+    }
+
+    public static String header() {
+      return "concurrency,throughput_rps,in_flight,latency_mean_ms,latency_p50_ms,latency_p99_ms,errors";
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d,%.1f,%.2f,%.3f,%.3f,%.3f,%d", concurrency, throughput, inFlight(),
+                           latency.getMean() / 1e6, latency.getValueAtPercentile(50) / 1e6,
+                           latency.getValueAtPercentile(99) / 1e6, errors);
+    }
+  }
+
+  /**
+   * The concurrency curve of an exploration and its knee.
+   */
+  public static final class Result {
+    /** The levels explored, by increasing concurrency. */
+    public final List<Level> levels;
+    /** The level with the highest power, {@code null} if no level completed. */
+    public final Level knee;
+
+    Result(final List<Level> levels) {
+      this.levels = Collections.unmodifiableList(levels);
+      Level best = null;
+      for (final Level level : levels) {
+        if (best == null || level.power() > best.power()) {
+          best = level;
+        }
+      }
+      knee = best;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder(Level.header()).append('\n');
+      for (final Level level : levels) {
+        sb.append(level).append('\n');
+      }
+      if (knee != null) {
+        sb.append(String.format("knee: concurrency %d, %.1f rps, p99 %.3f ms", knee.concurrency, knee.throughput,
+                                knee.latency.getValueAtPercentile(99) / 1e6));
+      }
+      return sb.toString();
+    }
+  }
+
+  private final int startConcurrency;
+  private final double growthFactor;
+  private final int maxConcurrency;
+  private final long stepNanos;
+  private final long settleNanos;
+  private final double plateauThreshold;
+
+  /**
+   * Explores concurrency from 1 to 1024, doubling it every 5s, until two levels in a row fail to
+   * beat the best throughput by 5%.
+   */
+  public ConcurrencyExplorer() {
+    this(1, 2.0, 1024, TimeUnit.SECONDS.toNanos(5), 0.05);
+  }
+
+  /**
+   * @param startConcurrency the first concurrency level.
+   * @param growthFactor how much the concurrency is multiplied by at each step (it grows by at
+   *                     least 1).
+   * @param maxConcurrency the highest concurrency level.
+   * @param stepNanos how long each level runs, of which the first fifth settles and is not measured.
+   * @param plateauThreshold the relative throughput growth under which a level does not improve on
+   *                         the best one so far.
+   */
+  public ConcurrencyExplorer(final int startConcurrency,
+                             final double growthFactor,
+                             final int maxConcurrency,
+                             final long stepNanos,
+                             final double plateauThreshold)
+  {
+    this.startConcurrency = startConcurrency;
+    this.growthFactor = growthFactor;
+    this.maxConcurrency = maxConcurrency;
+    this.stepNanos = stepNanos;
+    this.settleNanos = stepNanos / 5;
+    this.plateauThreshold = plateauThreshold;
+  }
+
+  /**
+   * @see #explore(ReceivePort, RequestExecutor, FiberScheduler)
+   */
+  public <Req, Res> Result explore(final ReceivePort<Req> requests, final RequestExecutor<Req, Res> executor)
+      throws InterruptedException, ExecutionException
+  {
+    return explore(requests, executor, null);
+  }
+
+  /**
+   * Runs a concurrency load test, raising its limit level by level, and blocks the calling thread
+   * until the knee is found or the maximum concurrency has been measured.
+   *
+   * @param requests provides requests for the load test; it should not run dry during exploration,
+   *                 which ends early if it is closed.
+   * @param executor executes the requests.
+   * @param fiberScheduler an optional scheduler for the fibers of the load test (the default one
+   *                       will be used if {@code null}).
+   * @return the measured levels and the knee.
+   */
+  public <Req, Res> Result explore(final ReceivePort<Req> requests,
+                                   final RequestExecutor<Req, Res> executor,
+                                   final FiberScheduler fiberScheduler)
+      throws InterruptedException, ExecutionException
+  {
+    final FiberScheduler scheduler = fiberScheduler != null ? fiberScheduler : DefaultFiberScheduler.getInstance();
+    final LoadControl control = new LoadControl(startConcurrency);
+    final org.HdrHistogram.Recorder latency = new org.HdrHistogram.Recorder(3);
+    final LongAdder errors = new LongAdder();
+
+    final Channel<TimingEvent<Res>> eventCh = Channels.newChannel(1024, Channels.OverflowPolicy.BLOCK, false, true);
+    final Fiber<Void> recorder = Recorder.record("jbender-explorer-recorder", scheduler, eventCh, e -> {
+      latency.recordValue(e.durationNanos);
+      if (!e.isSuccess) {
+        errors.increment();
+      }
+    });
+    final Fiber<Void> loadTest = new Fiber<Void>("jbender-explorer", scheduler, () -> {
+      JBender.loadTestConcurrency(control, 0, requests, executor, eventCh, scheduler);
+    }).start();
+
+    final List<Level> levels = new ArrayList<>();
+    try {
+      int plateaued = 0;
+      double bestThroughput = 0;
+      for (int concurrency = startConcurrency; concurrency <= maxConcurrency && plateaued < 2;
+           concurrency = Math.max(concurrency + 1, (int) Math.ceil(concurrency * growthFactor))) {
+        control.setConcurrency(concurrency);
+        TimeUnit.NANOSECONDS.sleep(settleNanos);
+        latency.getIntervalHistogram();
+        errors.reset();
+
+        final long startNanos = System.nanoTime();
+        TimeUnit.NANOSECONDS.sleep(stepNanos - settleNanos);
+        final Histogram histogram = latency.getIntervalHistogram();
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        if (loadTest.isDone()) {
+          break;
+        }
+
+        final Level level = new Level(concurrency, histogram.getTotalCount() * 1e9 / elapsedNanos, histogram,
+                                      errors.sumThenReset());
+        if (!levels.isEmpty() && level.throughput < bestThroughput * (1 + plateauThreshold)) {
+          plateaued++;
+        } else {
+          plateaued = 0;
+        }
+        bestThroughput = Math.max(bestThroughput, level.throughput);
+        levels.add(level);
+      }
+    } finally {
+      control.stop("concurrency exploration over");
+      loadTest.join();
+      recorder.join();
+    }
+    return new Result(levels);
+  }
+}
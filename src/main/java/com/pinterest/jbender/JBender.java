@@ -20,13 +20,19 @@ import co.paralleluniverse.strands.channels.ReceivePort;
 import co.paralleluniverse.strands.channels.SendPort;
 import co.paralleluniverse.strands.concurrent.Semaphore;
 import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.executors.AsyncRequestExecutor;
+import com.pinterest.jbender.executors.PhaseTimedRequestExecutor;
 import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.executors.WarmupAwareRequestExecutor;
 import com.pinterest.jbender.intervals.IntervalGenerator;
+import com.pinterest.jbender.util.RateLimitedLogger;
 import com.pinterest.jbender.util.WaitGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * JBender has static methods for running load tests by throughput or concurrency.
@@ -34,6 +40,9 @@ import java.util.concurrent.TimeUnit;
 public final class JBender {
   private static final Logger LOG = LoggerFactory.getLogger(JBender.class);
 
+  // Failed requests are logged at a bounded rate, since every request may fail under load
+  private static final RateLimitedLogger ERROR_LOG = new RateLimitedLogger(LOG, 10);
+
   private JBender() {}
 
   /**
@@ -68,7 +77,7 @@ public final class JBender {
                                                    final SendPort<TimingEvent<Res>> eventChannel)
     throws InterruptedException, SuspendExecution
   {
-    loadTestThroughput(intervalGen, warmupRequests, requests, executor, eventChannel, null, null);
+    loadTestThroughput(new LoadControl(intervalGen), warmupRequests, requests, executor, eventChannel, null, null);
   }
 
   /**
@@ -106,7 +115,7 @@ public final class JBender {
                                                    final FiberScheduler fiberScheduler)
           throws InterruptedException, SuspendExecution
   {
-    loadTestThroughput(intervalGen, warmupRequests, requests, executor, eventChannel, fiberScheduler, null);
+    loadTestThroughput(new LoadControl(intervalGen), warmupRequests, requests, executor, eventChannel, fiberScheduler, null);
   }
 
   /**
@@ -144,7 +153,187 @@ public final class JBender {
                                                    final StrandFactory strandFactory)
           throws InterruptedException, SuspendExecution
   {
-    loadTestThroughput(intervalGen, warmupRequests, requests, executor, eventChannel, null, strandFactory);
+    loadTestThroughput(new LoadControl(intervalGen), warmupRequests, requests, executor, eventChannel, null, strandFactory);
+  }
+
+  /**
+   * Run a load test with a given throughput, using as many fibers as necessary, that can be
+   * controlled while running: its rate can be changed and dispatching paused, resumed or stopped.
+   *
+   * This method can be run in any strand; thread-fiber synchronization is more expensive than
+   * fiber-fiber synchronization though, so if requests are being performed by fibers its best
+   * to call this method inside a fiber.
+   *
+   * @param control provides the interval generator of the load test and controls it while running.
+   * @param warmupRequests the number of requests to use as "warmup" for the load tester and the
+   *                       service. These requests will not have TimingEvents generated in the
+   *                       eventChannel, but will be sent to the remote service at the requested
+   *                       rate.
+   * @param requests provides requests for the load test, which continues until this channel is
+   *                 closed or the load test is stopped through the control.
+   * @param executor executes the requests provided by the requests channel, returning a response
+   *                 object.
+   * @param eventChannel a TimingEvent is sent on this channel for every request executed during
+   *                     the load test (whether the request succeeds or not).
+   * @param fiberScheduler an optional scheduler for fibers that will perform the requests (the
+   *                       default one will be used if {@code null}).
+   * @param <Req> the request type.
+   * @param <Res> the response type.
+   * @throws SuspendExecution
+   * @throws InterruptedException
+   */
+  public static <Req, Res> void loadTestThroughput(final LoadControl control,
+                                                   final int warmupRequests,
+                                                   final ReceivePort<Req> requests,
+                                                   final RequestExecutor<Req, Res> executor,
+                                                   final SendPort<TimingEvent<Res>> eventChannel,
+                                                   final FiberScheduler fiberScheduler)
+          throws InterruptedException, SuspendExecution
+  {
+    loadTestThroughput(control, warmupRequests, requests, executor, eventChannel, fiberScheduler, null);
+  }
+
+  /**
+   * Run a load test with a given throughput over a weighted mix of requests, sharing a single
+   * arrival process.
+   *
+   * For each arrival an entry of the mix is chosen in constant time with probability proportional
+   * to its weight, and the TimingEvent of the request is labeled with the entry's label (so that
+   * it can be recorded, for example, with a LabeledHdrHistogramRecorder). The load test continues
+   * until all the request sources of the mix are closed.
+   *
+   * This method can be run in any strand; thread-fiber synchronization is more expensive than
+   * fiber-fiber synchronization though, so if requests are being performed by fibers its best
+   * to call this method inside a fiber.
+   *
+   * @param intervalGen provides the interval between subsequent requests (in nanoseconds). This
+   *                    controls the throughput of the load test.
+   * @param warmupRequests the number of requests (across the whole mix) to use as "warmup" for the
+   *                       load tester and the service. These requests will not have TimingEvents
+   *                       generated in the eventChannel, but will be sent to the remote service at
+   *                       the requested rate.
+   * @param mix the request sources, executors, labels and weights.
+   * @param eventChannel a TimingEvent is sent on this channel for every request executed during
+   *                     the load test (whether the request succeeds or not).
+   * @param fiberScheduler an optional scheduler for fibers that will perform the requests (the
+   *                       default one will be used if {@code null}).
+   * @param <Res> the response type.
+   * @throws SuspendExecution
+   * @throws InterruptedException
+   */
+  public static <Res> void loadTestThroughputMix(final IntervalGenerator intervalGen,
+                                                 final int warmupRequests,
+                                                 final RequestMix<Res> mix,
+                                                 final SendPort<TimingEvent<Res>> eventChannel,
+                                                 final FiberScheduler fiberScheduler)
+          throws SuspendExecution, InterruptedException
+  {
+    final RequestMix.SelectionExecutor<Res> executor = new RequestMix.SelectionExecutor<>();
+    try {
+      throughputLoop(new LoadControl(intervalGen), warmupRequests, mix.source(), (selection, waitNanos, overageNanos, warmup, waitGroup) -> {
+        final SuspendableCallable<Void> sc = () -> {
+          try {
+            final RequestExecOutcome<Res> outcome = executeRequest(selection, executor, warmup);
+            if (!warmup) {
+              report(selection.label(), waitNanos, overageNanos, outcome, eventChannel);
+            }
+          } finally {
+            waitGroup.done();
+          }
+          return null;
+        };
+        start(sc, fiberScheduler, null);
+      });
+    } finally {
+      eventChannel.close();
+    }
+  }
+
+  /**
+   * Run a load test with a given throughput over a weighted mix of requests, sharing a single
+   * arrival process; see
+   * {@link #loadTestThroughputMix(IntervalGenerator, int, RequestMix, SendPort, FiberScheduler)}.
+   */
+  public static <Res> void loadTestThroughputMix(final IntervalGenerator intervalGen,
+                                                 final int warmupRequests,
+                                                 final RequestMix<Res> mix,
+                                                 final SendPort<TimingEvent<Res>> eventChannel)
+          throws SuspendExecution, InterruptedException
+  {
+    loadTestThroughputMix(intervalGen, warmupRequests, mix, eventChannel, null);
+  }
+
+  /**
+   * Run a load test with a given throughput using an asynchronous executor.
+   *
+   * No strand is used for requests in flight: timing and reporting happen in the completion
+   * callback of each request, so the number of outstanding requests is bounded only by memory. The
+   * event channel should be able to buffer events (e.g. unbounded), since a new fiber is started
+   * to send any event that cannot be sent immediately from the callback.
+   *
+   * This method can be run in any strand; the pacing of requests is the same as
+   * {@link #loadTestThroughput(IntervalGenerator, int, ReceivePort, RequestExecutor, SendPort)}.
+   *
+   * @param intervalGen provides the interval between subsequent requests (in nanoseconds). This
+   *                    controls the throughput of the load test.
+   * @param warmupRequests the number of requests to use as "warmup" for the load tester and the
+   *                       service. These requests will not have TimingEvents generated in the
+   *                       eventChannel, but will be sent to the remote service at the requested
+   *                       rate.
+   * @param requests provides requests for the load test, must be closed by the caller to stop the
+   *                 load test (the load test will continue for as long as this channel is open,
+   *                 even if there are no requests arriving).
+   * @param executor starts the requests provided by the requests channel, returning a future
+   *                 response.
+   * @param eventChannel a TimingEvent is sent on this channel for every request executed during
+   *                     the load test (whether the request succeeds or not).
+   * @param <Req> the request type.
+   * @param <Res> the response type.
+   * @throws SuspendExecution
+   * @throws InterruptedException
+   */
+  public static <Req, Res> void loadTestThroughputAsync(final IntervalGenerator intervalGen,
+                                                        final int warmupRequests,
+                                                        final ReceivePort<Req> requests,
+                                                        final AsyncRequestExecutor<Req, Res> executor,
+                                                        final SendPort<TimingEvent<Res>> eventChannel)
+          throws SuspendExecution, InterruptedException
+  {
+    try {
+      throughputLoop(new LoadControl(intervalGen), warmupRequests, requests::receive, (request, waitNanos, overageNanos, warmup, waitGroup) -> {
+        final long startNanos = System.nanoTime();
+        CompletableFuture<Res> future;
+        try {
+          future = executor.execute(startNanos, request);
+        } catch (final Exception ex) {
+          future = new CompletableFuture<>();
+          future.completeExceptionally(ex);
+        }
+        future.whenComplete((response, t) -> {
+          final long execTime = System.nanoTime() - startNanos;
+          try {
+            if (!warmup) {
+              final TimingEvent<Res> event;
+              if (t == null) {
+                event = new TimingEvent<>(waitNanos, execTime, overageNanos, response);
+              } else {
+                final Exception ex = asyncException(t);
+                ERROR_LOG.error("Exception while executing request {}", request, ex);
+                event = new TimingEvent<>(waitNanos, execTime, overageNanos, ex);
+              }
+              if (!eventChannel.trySend(event)) {
+                waitGroup.add();
+                new Fiber<>(new EventSender<>(event, eventChannel, waitGroup)).start();
+              }
+            }
+          } finally {
+            waitGroup.done();
+          }
+        });
+      });
+    } finally {
+      eventChannel.close();
+    }
   }
 
   /**
@@ -178,7 +367,7 @@ public final class JBender {
                                                     final SendPort<TimingEvent<Res>> eventChannel)
     throws SuspendExecution, InterruptedException
   {
-    loadTestConcurrency(concurrency, warmupRequests, requests, executor, eventChannel, null, null);
+    loadTestConcurrency(new LoadControl(concurrency), warmupRequests, requests, executor, eventChannel, null, null);
   }
 
   /**
@@ -215,7 +404,7 @@ public final class JBender {
                                                     final FiberScheduler fiberScheduler)
           throws SuspendExecution, InterruptedException
   {
-    loadTestConcurrency(concurrency, warmupRequests, requests, executor, eventChannel, fiberScheduler, null);
+    loadTestConcurrency(new LoadControl(concurrency), warmupRequests, requests, executor, eventChannel, fiberScheduler, null);
   }
 
   /**
@@ -252,22 +441,215 @@ public final class JBender {
                                                     final StrandFactory strandFactory)
           throws SuspendExecution, InterruptedException
   {
-    loadTestConcurrency(concurrency, warmupRequests, requests, executor, eventChannel, null, strandFactory);
+    loadTestConcurrency(new LoadControl(concurrency), warmupRequests, requests, executor, eventChannel, null, strandFactory);
+  }
+
+  /**
+   * Run a load test with a number of fibers that can be controlled while running: the concurrency
+   * limit can be resized and dispatching paused, resumed or stopped.
+   *
+   * This method can be run in any strand; thread-fiber synchronization is more expensive than
+   * fiber-fiber synchronization though, so if requests are being performed by fibers its best
+   * to call this method inside a fiber.
+   *
+   * @param control provides the concurrency limit of the load test and controls it while running.
+   * @param warmupRequests the number of requests to use when warming up the load tester and the
+   *                       remote service. These requests will not not have TimingEvents generated
+   *                       in the eventChannel, but will be sent to the remote service.
+   * @param requests provides requests for the load test, which continues until this channel is
+   *                 closed or the load test is stopped through the control.
+   * @param executor executes the requets provided by the requests channel, returning a response
+   *                 object.
+   * @param eventChannel a TimingEvent is sent on this channel for every request executed during
+   *                     the load test (whether the request succeeds or not).
+   * @param fiberScheduler an optional scheduler for fibers that will perform the requests (the
+   *                       default one will be used if {@code null}).
+   * @param <Req> the request type.
+   * @param <Res> the response type.
+   * @throws SuspendExecution
+   * @throws InterruptedException
+   */
+  public static <Req, Res> void loadTestConcurrency(final LoadControl control,
+                                                    final int warmupRequests,
+                                                    final ReceivePort<Req> requests,
+                                                    final RequestExecutor<Req, Res> executor,
+                                                    final SendPort<TimingEvent<Res>> eventChannel,
+                                                    final FiberScheduler fiberScheduler)
+          throws SuspendExecution, InterruptedException
+  {
+    loadTestConcurrency(control, warmupRequests, requests, executor, eventChannel, fiberScheduler, null);
+  }
+
+  /**
+   * Run a closed-loop load test with a given number of virtual users, each making requests one
+   * after another and waiting for a think time between them, like real clients do.
+   *
+   * This method can be run in any strand; thread-fiber synchronization is more expensive than
+   * fiber-fiber synchronization though, so if requests are being performed by fibers its best
+   * to call this method inside a fiber.
+   *
+   * @param users the number of virtual users, each running in its own fiber.
+   * @param thinkTime provides the time (in nanoseconds) each user waits after a request before
+   *                  making the next one.
+   * @param warmup decides when the load test reaches steady state: requests started before then
+   *               will not have TimingEvents generated in the eventChannel. No warmup if
+   *               {@code null}.
+   * @param requests provides requests for the load test, which continues until this channel is
+   *                 closed.
+   * @param executor executes the requests provided by the requests channel, returning a response
+   *                 object.
+   * @param eventChannel a TimingEvent is sent on this channel for every request executed during
+   *                     the load test (whether the request succeeds or not).
+   * @param <Req> the request type.
+   * @param <Res> the response type.
+   * @throws SuspendExecution
+   * @throws InterruptedException
+   */
+  public static <Req, Res> void loadTestClosedLoop(final int users,
+                                                   final IntervalGenerator thinkTime,
+                                                   final WarmupDetector warmup,
+                                                   final ReceivePort<Req> requests,
+                                                   final RequestExecutor<Req, Res> executor,
+                                                   final SendPort<TimingEvent<Res>> eventChannel)
+          throws SuspendExecution, InterruptedException
+  {
+    loadTestClosedLoop(new LoadControl(users), thinkTime, warmup, requests, executor, eventChannel, null);
+  }
+
+  /**
+   * Run a closed-loop load test with a given number of virtual users, each making requests one
+   * after another and waiting for a think time between them, that can be paused, resumed or
+   * stopped while running.
+   *
+   * This method can be run in any strand; thread-fiber synchronization is more expensive than
+   * fiber-fiber synchronization though, so if requests are being performed by fibers its best
+   * to call this method inside a fiber.
+   *
+   * @param control provides the number of virtual users (its concurrency, read once when the load
+   *                test starts: later changes to it have no effect) and pauses, resumes or stops
+   *                the load test while running; users stop after their current request.
+   * @param thinkTime provides the time (in nanoseconds) each user waits after a request before
+   *                  making the next one.
+   * @param warmup decides when the load test reaches steady state: requests started before then
+   *               will not have TimingEvents generated in the eventChannel. No warmup if
+   *               {@code null}.
+   * @param requests provides requests for the load test, which continues until this channel is
+   *                 closed or the load test is stopped through the control.
+   * @param executor executes the requests provided by the requests channel, returning a response
+   *                 object.
+   * @param eventChannel a TimingEvent is sent on this channel for every request executed during
+   *                     the load test (whether the request succeeds or not).
+   * @param fiberScheduler an optional scheduler for the fibers of the users (the default one will
+   *                       be used if {@code null}).
+   * @param <Req> the request type.
+   * @param <Res> the response type.
+   * @throws SuspendExecution
+   * @throws InterruptedException
+   */
+  public static <Req, Res> void loadTestClosedLoop(final LoadControl control,
+                                                   final IntervalGenerator thinkTime,
+                                                   final WarmupDetector warmup,
+                                                   final ReceivePort<Req> requests,
+                                                   final RequestExecutor<Req, Res> executor,
+                                                   final SendPort<TimingEvent<Res>> eventChannel,
+                                                   final FiberScheduler fiberScheduler)
+          throws SuspendExecution, InterruptedException
+  {
+    try {
+      final long startNanos = System.nanoTime();
+      final WaitGroup waitGroup = new WaitGroup();
+      for (int i = control.getConcurrency(); i > 0; i--) {
+        waitGroup.add();
+        final SuspendableCallable<Void> user = () -> {
+          control.attach();
+          try {
+            while (true) {
+              control.awaitResumed();
+              if (control.isStopped()) {
+                break;
+              }
+
+              final Req request = requests.receive();
+              if (request == null) {
+                break;
+              }
+
+              final boolean warm = warmup == null || warmup.isWarm();
+              final RequestExecOutcome<Res> outcome = executeRequest(request, executor, !warm);
+              if (warm) {
+                report(0, 0, outcome, eventChannel);
+                control.dispatched();
+              } else {
+                warmup.record(outcome.execTime);
+              }
+
+              // Think for the whole time even if woken by a change to the control (and not counting
+              // time spent paused), so that users do not all fire at once on resume
+              final long thinkNanos = thinkTime.nextInterval(System.nanoTime() - startNanos);
+              long thinkNanosStart = System.nanoTime();
+              while (control.sleep(thinkNanosStart + thinkNanos - System.nanoTime()) && !control.isStopped()) {
+                thinkNanosStart += control.awaitResumed();
+              }
+            }
+          } finally {
+            control.detach();
+            waitGroup.done();
+          }
+          return null;
+        };
+        start(user, fiberScheduler, null);
+      }
+
+      waitGroup.await();
+    } finally {
+      eventChannel.close();
+    }
   }
 
   private static class RequestExecOutcome<Res> {
+    final long startNanos;
     final long execTime;
     final Res response;
     final Exception exception;
+    final long[] phaseNanos;
 
-    public RequestExecOutcome(final long execTime, final Res response, final Exception exception) {
+    public RequestExecOutcome(final long startNanos, final long execTime, final Res response, final Exception exception, final long[] phaseNanos) {
+      this.startNanos = startNanos;
       this.execTime = execTime;
       this.response = response;
       this.exception = exception;
+      this.phaseNanos = phaseNanos;
     }
   }
 
-  private static <Req, Res> void loadTestThroughput(final IntervalGenerator intervalGen,
+  /**
+   * Starts the processing of a single request in the throughput loop, without blocking the loop.
+   */
+  @FunctionalInterface
+  private interface Dispatcher<Req> {
+    /**
+     * @param request the request to process.
+     * @param waitNanos the time waited before dispatching the request.
+     * @param overageNanos the dispatching overhead still to be compensated for.
+     * @param warmup whether the request is a warmup one (and must not be reported).
+     * @param waitGroup the wait group of outstanding requests, already incremented for this one.
+     */
+    void dispatch(Req request, long waitNanos, long overageNanos, boolean warmup, WaitGroup waitGroup)
+        throws SuspendExecution, InterruptedException;
+  }
+
+  /**
+   * Provides the requests of the throughput loop.
+   */
+  @FunctionalInterface
+  interface RequestSource<Req> {
+    /**
+     * @return the next request, waiting for it if needed, or {@code null} once there are no more.
+     */
+    Req next() throws SuspendExecution, InterruptedException;
+  }
+
+  private static <Req, Res> void loadTestThroughput(final LoadControl control,
                                                     int warmupRequests,
                                                     final ReceivePort<Req> requests,
                                                     final RequestExecutor<Req, Res> executor,
@@ -276,44 +658,13 @@ public final class JBender {
                                                     final StrandFactory strandFactory)
           throws SuspendExecution, InterruptedException
   {
-    final long startNanos = System.nanoTime();
-
     try {
-      long overageNanos = 0;
-      long overageStart = System.nanoTime();
-
-      final WaitGroup waitGroup = new WaitGroup();
-      while (true) {
-        final long receiveNanosStart = System.nanoTime();
-        final Req request = requests.receive();
-        LOG.trace("Receive request time: {}", System.nanoTime() - receiveNanosStart);
-        if (request == null) {
-          break;
-        }
-
-        // Wait before dispatching request as much as generated, minus the remaining dispatching overhead
-        // to be compensated for (up to having 0 waiting time of course, not negative)
-        long waitNanos = intervalGen.nextInterval(System.nanoTime() - startNanos);
-        final long adjust = Math.min(waitNanos, overageNanos);
-        waitNanos -= adjust;
-        overageNanos -= adjust;
-
-        // Sleep in the accepting fiber
-        long sleepNanosStart = System.nanoTime();
-        Strand.sleep(waitNanos, TimeUnit.NANOSECONDS);
-        LOG.trace("Sleep time: {}", System.nanoTime() - sleepNanosStart);
-
-        // Increment wait group count for new request handler
-        waitGroup.add();
-        final long curWaitNanos = waitNanos;
-        final long curWarmupRequests = warmupRequests;
-        final long curOverageNanos = overageNanos;
-
+      throughputLoop(control, warmupRequests, requests::receive, (request, waitNanos, overageNanos, warmup, waitGroup) -> {
         final SuspendableCallable<Void> sc = () -> {
           try {
-            final RequestExecOutcome<Res> outcome = executeRequest(request, executor);
-            if (curWarmupRequests <= 0) {
-              report(curWaitNanos, curOverageNanos, outcome, eventChannel);
+            final RequestExecOutcome<Res> outcome = executeRequest(request, executor, warmup);
+            if (!warmup) {
+              report(waitNanos, overageNanos, outcome, eventChannel);
             }
           } finally {
             // Complete, decrementing wait group count
@@ -321,28 +672,82 @@ public final class JBender {
           }
           return null;
         };
-        if (fiberScheduler != null) {
-          new Fiber<>(fiberScheduler, sc).start();
-        } else if (strandFactory != null) {
-          strandFactory.newStrand(sc).start();
-        } else {
-          new Fiber<>(sc).start();
-        }
+        start(sc, fiberScheduler, strandFactory);
+      });
+    } finally {
+      eventChannel.close();
+    }
+  }
 
-        final long nowNanos = System.nanoTime();
-        overageNanos += nowNanos - overageStart - waitNanos;
-        overageStart = nowNanos;
-        warmupRequests = Math.max(warmupRequests - 1, 0);
+  private static <Req> void throughputLoop(final LoadControl control,
+                                           int warmupRequests,
+                                           final RequestSource<Req> requests,
+                                           final Dispatcher<Req> dispatcher)
+          throws SuspendExecution, InterruptedException
+  {
+    final long startNanos = System.nanoTime();
+
+    long overageNanos = 0;
+    long overageStart = System.nanoTime();
+
+    final WaitGroup waitGroup = new WaitGroup();
+    control.attach();
+    while (true) {
+      // Time spent paused is not dispatching overhead
+      overageStart += control.awaitResumed();
+      if (control.isStopped()) {
+        break;
       }
 
-      // Wait for all outstanding requests
-      waitGroup.await();
-    } finally {
-      eventChannel.close();
+      final long receiveNanosStart = System.nanoTime();
+      final Req request = requests.next();
+      LOG.trace("Receive request time: {}", System.nanoTime() - receiveNanosStart);
+      if (request == null) {
+        break;
+      }
+
+      // Wait before dispatching request as much as generated, minus the remaining dispatching overhead
+      // to be compensated for (up to having 0 waiting time of course, not negative)
+      long waitNanos = control.getIntervalGenerator().nextInterval(System.nanoTime() - startNanos);
+      final long adjust = Math.min(waitNanos, overageNanos);
+      waitNanos -= adjust;
+      overageNanos -= adjust;
+
+      // Sleep in the accepting fiber; if the rate is changed or dispatching paused meanwhile, wait
+      // for the interval of the new rate instead (counting the time already waited)
+      long sleepNanosStart = System.nanoTime();
+      while (control.sleep(sleepNanosStart + waitNanos - System.nanoTime()) && !control.isStopped()) {
+        final long pausedNanos = control.awaitResumed();
+        overageStart += pausedNanos;
+        sleepNanosStart += pausedNanos;
+        waitNanos = Math.max(control.getIntervalGenerator().nextInterval(System.nanoTime() - startNanos),
+                             System.nanoTime() - sleepNanosStart);
+      }
+      LOG.trace("Sleep time: {}", System.nanoTime() - sleepNanosStart);
+      if (control.isStopped()) {
+        break;
+      }
+
+      // Increment wait group count for new request handler
+      waitGroup.add();
+      dispatcher.dispatch(request, waitNanos, overageNanos, warmupRequests > 0, waitGroup);
+      if (warmupRequests == 0) {
+        control.dispatched();
+      }
+
+      final long nowNanos = System.nanoTime();
+      overageNanos += nowNanos - overageStart - waitNanos;
+      overageStart = nowNanos;
+      warmupRequests = Math.max(warmupRequests - 1, 0);
     }
+
+    control.detach();
+
+    // Wait for all outstanding requests
+    waitGroup.await();
   }
 
-  private static <Req, Res> void loadTestConcurrency(final int concurrency,
+  private static <Req, Res> void loadTestConcurrency(final LoadControl control,
                                                      int warmupRequests,
                                                      final ReceivePort<Req> requests,
                                                      final RequestExecutor<Req, Res> executor,
@@ -353,20 +758,31 @@ public final class JBender {
   {
     try {
       final WaitGroup waitGroup = new WaitGroup();
-      final Semaphore running = new Semaphore(concurrency);
+      final Semaphore running = control.limit();
 
+      control.attach();
       while (true) {
+        control.awaitResumed();
+        if (control.isStopped()) {
+          break;
+        }
+
         final Req request = requests.receive();
         if (request == null) {
           break;
         }
 
         running.acquire();
+        control.awaitResumed();
+        if (control.isStopped()) {
+          running.release();
+          break;
+        }
         waitGroup.add();
         final long curWarmupRequests = warmupRequests;
         final SuspendableCallable<Void> sc = () -> {
           try {
-            final RequestExecOutcome<Res> outcome = executeRequest(request, executor);
+            final RequestExecOutcome<Res> outcome = executeRequest(request, executor, curWarmupRequests > 0);
             if (curWarmupRequests <= 0) {
               report(0, 0, outcome, eventChannel);
             }
@@ -376,16 +792,14 @@ public final class JBender {
           }
           return null;
         };
-        if (fiberScheduler != null) {
-          new Fiber<>(fiberScheduler, sc).start();
-        } else if (strandFactory != null) {
-          strandFactory.newStrand(sc).start();
-        } else {
-          new Fiber<>(sc).start();
+        start(sc, fiberScheduler, strandFactory);
+        if (curWarmupRequests <= 0) {
+          control.dispatched();
         }
 
         warmupRequests = Math.max(warmupRequests - 1, 0);
       }
+      control.detach();
 
       waitGroup.await();
     } finally {
@@ -393,19 +807,77 @@ public final class JBender {
     }
   }
 
-  private static <Req, Res> RequestExecOutcome<Res> executeRequest(final Req request, final RequestExecutor<Req, Res> executor)
+  /**
+   * Sends an event that could not be sent without blocking from an asynchronous completion.
+   */
+  private static final class EventSender<Res> implements SuspendableCallable<Void> {
+    private static final long serialVersionUID = 1L;
+
+    private final TimingEvent<Res> event;
+    private final SendPort<TimingEvent<Res>> eventChannel;
+    private final WaitGroup waitGroup;
+
+    EventSender(final TimingEvent<Res> event, final SendPort<TimingEvent<Res>> eventChannel, final WaitGroup waitGroup) {
+      this.event = event;
+      this.eventChannel = eventChannel;
+      this.waitGroup = waitGroup;
+    }
+
+    @Override
+    public Void run() throws SuspendExecution, InterruptedException {
+      try {
+        eventChannel.send(event);
+      } finally {
+        waitGroup.done();
+      }
+      return null;
+    }
+  }
+
+  private static void start(final SuspendableCallable<Void> sc,
+                            final FiberScheduler fiberScheduler,
+                            final StrandFactory strandFactory)
+  {
+    if (fiberScheduler != null) {
+      new Fiber<>(fiberScheduler, sc).start();
+    } else if (strandFactory != null) {
+      strandFactory.newStrand(sc).start();
+    } else {
+      new Fiber<>(sc).start();
+    }
+  }
+
+  private static Exception asyncException(Throwable t) {
+    if (t instanceof CompletionException && t.getCause() != null) {
+      t = t.getCause();
+    }
+    return t instanceof Exception ? (Exception) t : new ExecutionException(t);
+  }
+
+  private static <Req, Res> RequestExecOutcome<Res> executeRequest(final Req request,
+                                                                   final RequestExecutor<Req, Res> executor,
+                                                                   final boolean warmup)
           throws SuspendExecution, InterruptedException
   {
     Res response = null;
     Exception exc = null;
+    long[] phaseNanos = null;
     final long startNanos = System.nanoTime();
     try {
-      response = executor.execute(startNanos, request);
+      if (executor instanceof PhaseTimedRequestExecutor) {
+        final PhaseTimedRequestExecutor<Req, Res> phased = (PhaseTimedRequestExecutor<Req, Res>) executor;
+        phaseNanos = new long[phased.phaseNames().length];
+        response = phased.execute(startNanos, request, phaseNanos);
+      } else if (executor instanceof WarmupAwareRequestExecutor) {
+        response = ((WarmupAwareRequestExecutor<Req, Res>) executor).execute(startNanos, request, warmup);
+      } else {
+        response = executor.execute(startNanos, request);
+      }
     } catch (final Exception ex) {
-      LOG.error("Exception while executing request {}", request, ex);
+      ERROR_LOG.error("Exception while executing request {}", request, ex);
       exc = ex;
     }
-    return new RequestExecOutcome<>(System.nanoTime() - startNanos, response, exc);
+    return new RequestExecOutcome<>(startNanos, System.nanoTime() - startNanos, response, exc, phaseNanos);
   }
 
   private static <Res> void report(final long curWaitNanos,
@@ -414,12 +886,17 @@ public final class JBender {
                                    final SendPort<TimingEvent<Res>> eventChannel)
       throws SuspendExecution, InterruptedException
   {
-    if (outcome.exception == null) {
-      eventChannel.send(
-          new TimingEvent<>(curWaitNanos, outcome.execTime, curOverageNanos, outcome.response));
-    } else {
-      eventChannel.send(
-          new TimingEvent<>(curWaitNanos, outcome.execTime, curOverageNanos, outcome.exception));
-    }
+    report(null, curWaitNanos, curOverageNanos, outcome, eventChannel);
+  }
+
+  private static <Res> void report(final String label,
+                                   final long curWaitNanos,
+                                   long curOverageNanos,
+                                   final RequestExecOutcome<Res> outcome,
+                                   final SendPort<TimingEvent<Res>> eventChannel)
+      throws SuspendExecution, InterruptedException
+  {
+    eventChannel.send(new TimingEvent<>(label, outcome.startNanos, curWaitNanos, outcome.execTime, curOverageNanos,
+                                        outcome.response, outcome.exception, outcome.phaseNanos));
   }
 }
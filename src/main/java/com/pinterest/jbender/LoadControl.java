@@ -0,0 +1,319 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.concurrent.Semaphore;
+import com.pinterest.jbender.intervals.ExponentialIntervalGenerator;
+import com.pinterest.jbender.intervals.IntervalGenerator;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Handle to control a running load test: change its target rate or concurrency limit, pause and
+ * resume dispatching and stop it gracefully. Changes take effect immediately, even while the
+ * dispatcher is waiting for the next request time, and never interrupt in-flight requests.
+ *
+ * The handle can also be registered as an MBean to control the load test through JMX.
+ */
+public class LoadControl implements LoadControlMBean {
+  private volatile IntervalGenerator intervalGen;
+  private volatile boolean paused;
+  private volatile boolean stopped;
+  private volatile String stopReason;
+  private volatile Pacer pacer = Pacer.PARK;
+
+  // The strands dispatching requests (the dispatcher, or the users of a closed-loop load test)
+  private final Set<Strand> dispatchers = ConcurrentHashMap.newKeySet();
+
+  // Incremented on every change, to wake the dispatchers
+  private final AtomicLong version = new AtomicLong();
+
+  // The number of requests dispatched so far, excluding warmup requests
+  private final LongAdder dispatched = new LongAdder();
+
+  // The System#nanoTime of the first and last of these requests
+  private final LongAccumulator firstDispatchNanos = new LongAccumulator(Math::min, Long.MAX_VALUE);
+  private final LongAccumulator lastDispatchNanos = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+  private int concurrency;
+  private Limit limit;
+
+  /**
+   * @param intervalGen the initial interval generator of a throughput load test.
+   * @param concurrency the initial concurrency limit of a concurrency load test.
+   */
+  public LoadControl(final IntervalGenerator intervalGen, final int concurrency) {
+    this.intervalGen = intervalGen;
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * @param intervalGen the initial interval generator of a throughput load test.
+   */
+  public LoadControl(final IntervalGenerator intervalGen) {
+    this(intervalGen, 0);
+  }
+
+  /**
+   * @param concurrency the initial concurrency limit of a concurrency load test.
+   */
+  public LoadControl(final int concurrency) {
+    this(null, concurrency);
+  }
+
+  public IntervalGenerator getIntervalGenerator() {
+    return intervalGen;
+  }
+
+  /**
+   * Changes the interval generator, and thus the throughput, of a throughput load test.
+   */
+  public void setIntervalGenerator(final IntervalGenerator intervalGen) {
+    this.intervalGen = intervalGen;
+    changed();
+  }
+
+  @Override
+  public double getRate() {
+    final IntervalGenerator intervalGen = this.intervalGen;
+    return intervalGen != null ? intervalGen.getRate() : Double.NaN;
+  }
+
+  /**
+   * Changes the throughput of a throughput load test, with exponentially distributed intervals.
+   */
+  @Override
+  public void setRate(final double queriesPerSecond) {
+    this.intervalGen = new ExponentialIntervalGenerator(queriesPerSecond);
+    changed();
+  }
+
+  public Pacer getPacer() {
+    return pacer;
+  }
+
+  /**
+   * Changes how the dispatcher of a throughput load test waits between requests.
+   */
+  public void setPacer(final Pacer pacer) {
+    this.pacer = pacer;
+  }
+
+  @Override
+  public synchronized int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * Changes the concurrency limit of a concurrency load test. When it is lowered, no new request is
+   * started until the number of in-flight requests falls below the new limit.
+   */
+  @Override
+  public synchronized void setConcurrency(final int concurrency) {
+    if (limit != null) {
+      limit.resize(concurrency - this.concurrency);
+    }
+    this.concurrency = concurrency;
+  }
+
+  @Override
+  public boolean isPaused() {
+    return paused;
+  }
+
+  @Override
+  public void pause() {
+    paused = true;
+    changed();
+  }
+
+  @Override
+  public void resume() {
+    paused = false;
+    changed();
+  }
+
+  @Override
+  public boolean isStopped() {
+    return stopped;
+  }
+
+  /**
+   * Stops dispatching new requests; the load test returns once in-flight requests are complete.
+   */
+  @Override
+  public void stop() {
+    stop("stopped");
+  }
+
+  /**
+   * Stops dispatching new requests, recording why; the load test returns once in-flight requests
+   * are complete. Only the first reason is kept.
+   */
+  public synchronized void stop(final String reason) {
+    if (!stopped) {
+      stopReason = reason;
+      stopped = true;
+      changed();
+    }
+  }
+
+  /**
+   * @return the reason the load test was stopped, null if it was not.
+   */
+  @Override
+  public String getStopReason() {
+    return stopReason;
+  }
+
+  /**
+   * @return the number of requests dispatched so far, excluding warmup requests.
+   */
+  @Override
+  public long getDispatched() {
+    return dispatched.sum();
+  }
+
+  /**
+   * @return the System#nanoTime at which the first request counted by {@link #getDispatched()} was
+   * dispatched, Long.MAX_VALUE if none was.
+   */
+  public long getFirstDispatchNanos() {
+    return firstDispatchNanos.get();
+  }
+
+  /**
+   * @return the System#nanoTime at which the last request counted by {@link #getDispatched()} was
+   * dispatched, Long.MIN_VALUE if none was.
+   */
+  public long getLastDispatchNanos() {
+    return lastDispatchNanos.get();
+  }
+
+  /**
+   * Registers this handle with the platform MBean server.
+   *
+   * @param name the name of the load test, used in the MBean name.
+   * @return the name of the registered MBean.
+   */
+  public ObjectName register(final String name) throws JMException {
+    final ObjectName objectName = new ObjectName("com.pinterest.jbender:type=LoadControl,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+
+  private void changed() {
+    version.incrementAndGet();
+    for (final Strand s : dispatchers) {
+      Strand.unpark(s);
+    }
+  }
+
+  void dispatched() {
+    final long now = System.nanoTime();
+    firstDispatchNanos.accumulate(now);
+    lastDispatchNanos.accumulate(now);
+    dispatched.increment();
+  }
+
+  /**
+   * Adds the current strand to the dispatchers, woken up on changes.
+   */
+  void attach() {
+    dispatchers.add(Strand.currentStrand());
+  }
+
+  void detach() {
+    dispatchers.remove(Strand.currentStrand());
+  }
+
+  /**
+   * @return the concurrency limit of a concurrency load test, resized by later changes.
+   */
+  synchronized Semaphore limit() {
+    limit = new Limit(concurrency);
+    return limit;
+  }
+
+  /**
+   * Waits for the given time as the pacer says, returning early if this handle changes meanwhile.
+   *
+   * @return whether this handle changed.
+   */
+  boolean sleep(final long nanos) throws SuspendExecution, InterruptedException {
+    final Pacer pacer = this.pacer;
+    if (nanos <= pacer.getBatchNanos()) {
+      return false;
+    }
+
+    final long initialVersion = version.get();
+    final long deadline = System.nanoTime() + nanos;
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > pacer.getSpinNanos() && version.get() == initialVersion) {
+      Strand.parkNanos(this, remaining - pacer.getSpinNanos());
+      if (Strand.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    while (deadline - System.nanoTime() > 0 && version.get() == initialVersion) {
+      if (pacer.isYield()) {
+        Strand.yield();
+      }
+    }
+    return version.get() != initialVersion;
+  }
+
+  /**
+   * Waits while dispatching is paused (and not stopped).
+   *
+   * @return the time spent paused.
+   */
+  long awaitResumed() throws SuspendExecution, InterruptedException {
+    final long start = System.nanoTime();
+    while (paused && !stopped) {
+      Strand.park(this);
+      if (Strand.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Semaphore whose number of permits can be reduced, possibly below zero.
+   */
+  private static final class Limit extends Semaphore {
+    private static final long serialVersionUID = 1L;
+
+    Limit(final int permits) {
+      super(permits);
+    }
+
+    void resize(final int delta) {
+      if (delta > 0) {
+        release(delta);
+      } else if (delta < 0) {
+        reducePermits(-delta);
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+/**
+ * JMX management interface of a LoadControl.
+ */
+public interface LoadControlMBean {
+  /**
+   * @return the target throughput in requests per second, NaN if the interval generator does not
+   *         know its rate.
+   */
+  double getRate();
+
+  void setRate(double queriesPerSecond);
+
+  int getConcurrency();
+
+  void setConcurrency(int concurrency);
+
+  boolean isPaused();
+
+  void pause();
+
+  void resume();
+
+  boolean isStopped();
+
+  void stop();
+
+  String getStopReason();
+
+  long getDispatched();
+}
@@ -0,0 +1,80 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the dispatcher of a throughput load test waits until the next request time, trading CPU
+ * for precision.
+ *
+ * Parking a strand is cheap but only as precise as the scheduler's timers, which is much coarser
+ * than the intervals of high rates. A pacer can park for most of a wait and spin for its last
+ * part, and release requests due shortly together in a micro-batch instead of waiting between
+ * them: a request is then sent up to the batch window early, which the dispatcher makes up for by
+ * waiting as much longer for the following ones. Batching is for intervals below what even
+ * spinning can keep, since it distorts the inter-arrival distribution.
+ */
+public class Pacer {
+  /**
+   * Parks for every wait, which is the cheapest and least precise pacer.
+   */
+  public static final Pacer PARK = new Pacer(0, 0, false);
+
+  /**
+   * Parks for all but the last 100us of waits, yielding for the rest. Busy-spinning is more precise
+   * still, but only if the dispatcher has a core of its own: otherwise it delays the fibers that
+   * perform requests.
+   */
+  public static final Pacer PRECISE = new Pacer(TimeUnit.MICROSECONDS.toNanos(100), 0, true);
+
+  private final long spinNanos;
+  private final long batchNanos;
+  private final boolean yield;
+
+  /**
+   * @param spinNanos the last part of every wait which is spun instead of parked; 0 to always park.
+   * @param batchNanos requests due within this time are released immediately, in micro-batches; 0
+   *                   to release every request at its own time.
+   * @param yield whether to yield the strand while spinning, letting other fibers of the scheduler
+   *              run at the cost of precision, rather than busy-spinning.
+   */
+  public Pacer(final long spinNanos, final long batchNanos, final boolean yield) {
+    if (spinNanos < 0) {
+      throw new IllegalArgumentException("spinNanos must not be negative: " + spinNanos);
+    }
+    if (batchNanos < 0) {
+      throw new IllegalArgumentException("batchNanos must not be negative: " + batchNanos);
+    }
+    this.spinNanos = spinNanos;
+    this.batchNanos = batchNanos;
+    this.yield = yield;
+  }
+
+  public long getSpinNanos() {
+    return spinNanos;
+  }
+
+  public long getBatchNanos() {
+    return batchNanos;
+  }
+
+  public boolean isYield() {
+    return yield;
+  }
+
+  @Override
+  public String toString() {
+    return "Pacer(spinNanos=" + spinNanos + ", batchNanos=" + batchNanos + ", yield=" + yield + ")";
+  }
+}
@@ -0,0 +1,190 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import co.paralleluniverse.strands.channels.ReceivePort;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.intervals.IntervalGenerator;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.DoubleFunction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Runs load tests split into partitions, each with its own fiber scheduler owning a dispatcher,
+ * the fibers performing its requests and a recorder shard. Requests and their events never leave
+ * the carrier threads of their partition, which avoids cross-core traffic on every request on
+ * hosts with many cores; recorder shards are only merged by the caller once the load test is
+ * over (for live metrics, share a wait-free MetricsRecorder between the shards).
+ *
+ * Each partition runs its share of the load with its own requests, so the request sources should
+ * not be shared between partitions either.
+ */
+public class PartitionedLoadTest implements Closeable {
+  private final List<FiberForkJoinScheduler> schedulers = new ArrayList<>();
+  private volatile List<LoadControl> controls = Collections.emptyList();
+
+  /**
+   * Creates one single-threaded partition per available processor.
+   */
+  public PartitionedLoadTest() {
+    this(Runtime.getRuntime().availableProcessors(), 1);
+  }
+
+  /**
+   * @param partitions the number of partitions.
+   * @param threadsPerPartition the number of carrier threads of each partition's scheduler.
+   */
+  public PartitionedLoadTest(final int partitions, final int threadsPerPartition) {
+    for (int i = 0; i < partitions; i++) {
+      schedulers.add(new FiberForkJoinScheduler("jbender-partition-" + i, threadsPerPartition));
+    }
+  }
+
+  public int partitions() {
+    return schedulers.size();
+  }
+
+  /**
+   * Runs a throughput load test split equally among partitions, blocking until it is over.
+   *
+   * @param intervalGen creates the interval generator of a partition from its share of the
+   *                    throughput, in queries per second.
+   * @param queriesPerSecond the total throughput of the load test.
+   * @param warmupRequests the number of warmup requests, split equally among partitions.
+   * @param requests provides the requests of each partition, from its index.
+   * @param executor executes the requests of all partitions.
+   * @param recorders creates the recorder shard of each partition.
+   * @return the recorder shards, one per partition.
+   */
+  public <Req, Res, R extends Recorder<?>> List<R> loadTestThroughput(final DoubleFunction<IntervalGenerator> intervalGen,
+                                                                      final double queriesPerSecond,
+                                                                      final int warmupRequests,
+                                                                      final IntFunction<ReceivePort<Req>> requests,
+                                                                      final RequestExecutor<Req, Res> executor,
+                                                                      final Supplier<R> recorders)
+      throws InterruptedException, ExecutionException
+  {
+    final double partitionRate = queriesPerSecond / partitions();
+    return run(partitions(), i -> new LoadControl(intervalGen.apply(partitionRate)), true, warmupRequests, requests,
+               executor, recorders);
+  }
+
+  /**
+   * Runs a concurrency load test split among partitions, blocking until it is over.
+   *
+   * @param concurrency the total concurrency of the load test, split as equally as possible among
+   *                    partitions; when it is lower than the number of partitions, only the first
+   *                    {@code concurrency} partitions run, with a concurrency of 1.
+   * @param warmupRequests the number of warmup requests, split equally among the partitions that run.
+   * @param requests provides the requests of each partition, from its index.
+   * @param executor executes the requests of all partitions.
+   * @param recorders creates the recorder shard of each partition.
+   * @return the recorder shards, one per partition that ran.
+   */
+  public <Req, Res, R extends Recorder<?>> List<R> loadTestConcurrency(final int concurrency,
+                                                                       final int warmupRequests,
+                                                                       final IntFunction<ReceivePort<Req>> requests,
+                                                                       final RequestExecutor<Req, Res> executor,
+                                                                       final Supplier<R> recorders)
+      throws InterruptedException, ExecutionException
+  {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be at least 1: " + concurrency);
+    }
+    // A partition without permits would take a request and never run it
+    final int partitions = Math.min(concurrency, partitions());
+    return run(partitions, i -> new LoadControl(concurrency / partitions + (i < concurrency % partitions ? 1 : 0)),
+               false, warmupRequests, requests, executor, recorders);
+  }
+
+  /**
+   * Stops the running load test in all partitions.
+   */
+  public void stop() {
+    for (final LoadControl control : controls) {
+      control.stop();
+    }
+  }
+
+  /**
+   * Shuts the schedulers of the partitions down.
+   */
+  @Override
+  public void close() {
+    for (final FiberForkJoinScheduler scheduler : schedulers) {
+      scheduler.getForkJoinPool().shutdown();
+    }
+  }
+
+  private <Req, Res, R extends Recorder<?>> List<R> run(final int partitions,
+                                                        final IntFunction<LoadControl> controlFactory,
+                                                        final boolean throughput,
+                                                        final int warmupRequests,
+                                                        final IntFunction<ReceivePort<Req>> requests,
+                                                        final RequestExecutor<Req, Res> executor,
+                                                        final Supplier<R> recorders)
+      throws InterruptedException, ExecutionException
+  {
+    final List<LoadControl> partitionControls = new ArrayList<>(partitions);
+    final List<R> shards = new ArrayList<>(partitions);
+    final List<Fiber<Void>> fibers = new ArrayList<>(2 * partitions);
+    for (int i = 0; i < partitions; i++) {
+      partitionControls.add(controlFactory.apply(i));
+    }
+    controls = partitionControls;
+
+    for (int i = 0; i < partitions; i++) {
+      final FiberForkJoinScheduler scheduler = schedulers.get(i);
+      final LoadControl control = partitionControls.get(i);
+      final ReceivePort<Req> partitionRequests = requests.apply(i);
+      final int partitionWarmup = warmupRequests / partitions + (i < warmupRequests % partitions ? 1 : 0);
+
+      // Many request fibers send events, only the partition's recorder receives them
+      final Channel<TimingEvent<Res>> eventCh = Channels.newChannel(1024, Channels.OverflowPolicy.BLOCK, false, true);
+      final R shard = recorders.get();
+      shards.add(shard);
+      fibers.add(Recorder.record("jbender-recorder-" + i, scheduler, eventCh, recorderOf(shard)));
+
+      fibers.add(new Fiber<Void>("jbender-dispatcher-" + i, scheduler, () -> {
+        if (throughput) {
+          JBender.loadTestThroughput(control, partitionWarmup, partitionRequests, executor, eventCh, scheduler);
+        } else {
+          JBender.loadTestConcurrency(control, partitionWarmup, partitionRequests, executor, eventCh, scheduler);
+        }
+      }).start());
+    }
+
+    for (final Fiber<Void> fiber : fibers) {
+      fiber.join();
+    }
+    return shards;
+  }
+
+  // Most recorders are raw types, which record events of any response type
+  @SuppressWarnings("unchecked")
+  private static <Res> Recorder<Res> recorderOf(final Recorder<?> recorder) {
+    return (Recorder<Res>) recorder;
+  }
+}
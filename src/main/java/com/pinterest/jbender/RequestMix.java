@@ -0,0 +1,193 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.channels.ReceivePort;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.executors.WarmupAwareRequestExecutor;
+import com.pinterest.jbender.util.AliasSampler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A weighted mix of request sources, each with its own executor and label, sharing the arrival
+ * process of a single load test (see JBender#loadTestThroughputMix).
+ *
+ * For each arrival an entry is chosen with probability proportional to its weight, and the next
+ * request of its source is executed with its executor; the TimingEvent is labeled with the entry's
+ * label. If the chosen source has no request ready, another entry is drawn instead of holding up
+ * the arrival process for all the others. When a source is closed its entry leaves the mix, and
+ * the load test ends once all sources are closed.
+ *
+ * @param <Res> the (common super-)type of the responses.
+ */
+public final class RequestMix<Res> {
+  private final List<Entry<?, Res>> entries = new ArrayList<>();
+
+  /**
+   * Adds an entry to the mix.
+   *
+   * @param label the label of the TimingEvents of this entry's requests.
+   * @param weight the relative weight of this entry, must be positive.
+   * @param requests provides the requests for this entry.
+   * @param executor executes the requests for this entry.
+   * @param <Req> the request type of this entry.
+   * @return this mix.
+   */
+  public <Req> RequestMix<Res> add(final String label,
+                                   final double weight,
+                                   final ReceivePort<Req> requests,
+                                   final RequestExecutor<Req, ? extends Res> executor)
+  {
+    if (!(weight > 0)) {
+      throw new IllegalArgumentException("Weight must be positive: " + weight);
+    }
+    entries.add(new Entry<>(label, weight, requests, executor));
+    return this;
+  }
+
+  JBender.RequestSource<Selection<?, Res>> source() {
+    return new MixSource<>(entries);
+  }
+
+  private static final class Entry<Req, Res> {
+    final String label;
+    final double weight;
+    final ReceivePort<Req> requests;
+    final RequestExecutor<Req, ? extends Res> executor;
+
+    Entry(final String label, final double weight, final ReceivePort<Req> requests, final RequestExecutor<Req, ? extends Res> executor) {
+      this.label = label;
+      this.weight = weight;
+      this.requests = requests;
+      this.executor = executor;
+    }
+
+    Selection<Req, Res> tryReceive() {
+      final Req request = requests.tryReceive();
+      return request != null ? new Selection<>(this, request) : null;
+    }
+
+    Selection<Req, Res> receive(final long timeoutNanos) throws SuspendExecution, InterruptedException {
+      final Req request = requests.receive(timeoutNanos, TimeUnit.NANOSECONDS);
+      return request != null ? new Selection<>(this, request) : null;
+    }
+  }
+
+  /**
+   * A request chosen from the mix, along with its entry.
+   */
+  static final class Selection<Req, Res> {
+    private final Entry<Req, Res> entry;
+    private final Req request;
+
+    private Selection(final Entry<Req, Res> entry, final Req request) {
+      this.entry = entry;
+      this.request = request;
+    }
+
+    String label() {
+      return entry.label;
+    }
+
+    Res execute(final long nanoTime, final boolean warmup) throws SuspendExecution, InterruptedException {
+      if (warmup && entry.executor instanceof WarmupAwareRequestExecutor) {
+        return ((WarmupAwareRequestExecutor<Req, ? extends Res>) entry.executor).execute(nanoTime, request, true);
+      }
+      return entry.executor.execute(nanoTime, request);
+    }
+
+    @Override
+    public String toString() {
+      return entry.label + ":" + request;
+    }
+  }
+
+  /**
+   * Executes selections with their entry's executor.
+   */
+  static final class SelectionExecutor<Res> implements WarmupAwareRequestExecutor<Selection<?, Res>, Res> {
+    @Override
+    public Res execute(final long nanoTime, final Selection<?, Res> selection, final boolean warmup)
+        throws SuspendExecution, InterruptedException
+    {
+      return selection.execute(nanoTime, warmup);
+    }
+  }
+
+  /**
+   * Chooses an entry for each request; not thread-safe, as it is only used by the dispatching strand.
+   */
+  private static final class MixSource<Res> implements JBender.RequestSource<Selection<?, Res>> {
+    // How long to wait for a request when no source drawn has one ready, before drawing again
+    private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<Entry<?, Res>> live;
+    private final Random rand = new Random();
+    private AliasSampler sampler;
+
+    MixSource(final List<Entry<?, Res>> entries) {
+      this.live = new ArrayList<>(entries);
+      this.sampler = sampler(live);
+    }
+
+    private static AliasSampler sampler(final List<? extends Entry<?, ?>> entries) {
+      if (entries.isEmpty()) {
+        return null;
+      }
+      final double[] weights = new double[entries.size()];
+      for (int i = 0; i < weights.length; i++) {
+        weights[i] = entries.get(i).weight;
+      }
+      return new AliasSampler(weights);
+    }
+
+    @Override
+    public Selection<?, Res> next() throws SuspendExecution, InterruptedException {
+      while (!live.isEmpty()) {
+        // Draw as many times as there are sources, skipping those with no request ready
+        for (int draws = live.size(); draws > 0 && !live.isEmpty(); draws--) {
+          final int i = sampler.sample(rand);
+          final Selection<?, Res> selection = live.get(i).tryReceive();
+          if (selection != null) {
+            return selection;
+          }
+          removeIfClosed(i);
+        }
+        if (live.isEmpty()) {
+          break;
+        }
+
+        final int i = sampler.sample(rand);
+        final Selection<?, Res> selection = live.get(i).receive(WAIT_NANOS);
+        if (selection != null) {
+          return selection;
+        }
+        removeIfClosed(i);
+      }
+      return null;
+    }
+
+    private void removeIfClosed(final int i) {
+      if (live.get(i).requests.isClosed()) {
+        // Renormalize among the remaining sources
+        live.remove(i);
+        sampler = sampler(live);
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a load test reaches steady state, from the requests completed so far.
+ *
+ * Completed requests are grouped in windows of fixed duration; warmup is over once throughput and
+ * median latency have stayed within a tolerance of their mean for a number of consecutive
+ * windows, or after a maximum warmup time in any case.
+ */
+public class WarmupDetector {
+  private final long windowNanos;
+  private final double tolerance;
+  private final long maxWarmupNanos;
+
+  private final double[] throughputs;
+  private final double[] medians;
+  private final Histogram window = new Histogram(3);
+  private int windows;
+  private long startNanos;
+  private long windowStartNanos;
+  private long requests;
+  private volatile boolean warm;
+
+  /**
+   * Detects steady state over 1s windows, once 5 consecutive windows are within 10% of their
+   * mean, or after 60s.
+   */
+  public WarmupDetector() {
+    this(TimeUnit.SECONDS.toNanos(1), 5, 0.1, TimeUnit.SECONDS.toNanos(60));
+  }
+
+  /**
+   * @param windowNanos the duration of a window.
+   * @param stableWindows the number of consecutive windows that must be stable.
+   * @param tolerance how far from their mean, as a fraction of it, the throughput and median
+   *                  latency of stable windows may be.
+   * @param maxWarmupNanos the time after which warmup is over even without steady state.
+   */
+  public WarmupDetector(final long windowNanos, final int stableWindows, final double tolerance, final long maxWarmupNanos) {
+    this.windowNanos = windowNanos;
+    this.tolerance = tolerance;
+    this.maxWarmupNanos = maxWarmupNanos;
+    throughputs = new double[stableWindows];
+    medians = new double[stableWindows];
+  }
+
+  public boolean isWarm() {
+    return warm;
+  }
+
+  /**
+   * @return the number of requests started during warmup.
+   */
+  public synchronized long getWarmupRequests() {
+    return requests;
+  }
+
+  /**
+   * Records a request started during warmup; it counts as a warmup request even if warmup ended
+   * while it ran (because of other requests), but then no longer affects steady state detection.
+   *
+   * @param durationNanos the duration of the request.
+   */
+  public synchronized void record(final long durationNanos) {
+    requests++;
+    if (warm) {
+      return;
+    }
+
+    final long nowNanos = System.nanoTime();
+    if (requests == 1) {
+      startNanos = nowNanos;
+      windowStartNanos = nowNanos;
+    }
+    while (nowNanos - windowStartNanos >= windowNanos) {
+      closeWindow();
+      windowStartNanos += windowNanos;
+    }
+    window.recordValue(durationNanos);
+
+    if (nowNanos - startNanos >= maxWarmupNanos) {
+      warm = true;
+    }
+  }
+
+  private void closeWindow() {
+    final int i = windows++ % throughputs.length;
+    throughputs[i] = window.getTotalCount() * 1e9 / windowNanos;
+    medians[i] = window.getValueAtPercentile(50);
+    window.reset();
+
+    if (windows >= throughputs.length && isStable(throughputs) && isStable(medians)) {
+      warm = true;
+    }
+  }
+
+  private boolean isStable(final double[] values) {
+    double min = Double.MAX_VALUE;
+    double max = 0;
+    double sum = 0;
+    for (final double value : values) {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+      sum += value;
+    }
+    final double mean = sum / values.length;
+    return mean > 0 && max - mean <= tolerance * mean && mean - min <= tolerance * mean;
+  }
+}
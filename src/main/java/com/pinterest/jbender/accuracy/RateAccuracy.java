@@ -0,0 +1,283 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.accuracy;
+
+import co.paralleluniverse.fibers.DefaultFiberScheduler;
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.JBender;
+import com.pinterest.jbender.LoadControl;
+import com.pinterest.jbender.Pacer;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.intervals.IntervalGenerator;
+import com.pinterest.jbender.util.ListReceivePort;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Measures how accurately the throughput loop delivers a requested rate and inter-arrival
+ * distribution.
+ *
+ * Requests are dispatched to an executor that only records when it starts, while the intervals
+ * returned by the generator are recorded as the intended schedule. The result compares the
+ * achieved rate with the requested one, reports the send-time jitter (how late each request
+ * starts relative to its intended time, measured from the first request) and runs a two-sample
+ * Kolmogorov-Smirnov test between the achieved and intended inter-arrival times.
+ */
+public class RateAccuracy {
+  public static final class Result {
+    public final String generator;
+    public final double requestedRate;
+    public final double achievedRate;
+    public final int samples;
+
+    /**
+     * The lateness of requests relative to their intended send time, in nanoseconds (early
+     * requests are recorded as 0).
+     */
+    public final Histogram jitter;
+
+    /**
+     * The Kolmogorov-Smirnov statistic: the largest distance between the achieved and intended
+     * cumulative distributions of inter-arrival times.
+     */
+    public final double ksStatistic;
+
+    /**
+     * The probability of a statistic at least this large if both samples had the same
+     * distribution; small values mean the dispatcher distorts the distribution.
+     */
+    public final double ksPValue;
+
+    Result(final String generator,
+           final double requestedRate,
+           final double achievedRate,
+           final int samples,
+           final Histogram jitter,
+           final double ksStatistic,
+           final double ksPValue)
+    {
+      this.generator = generator;
+      this.requestedRate = requestedRate;
+      this.achievedRate = achievedRate;
+      this.samples = samples;
+      this.jitter = jitter;
+      this.ksStatistic = ksStatistic;
+      this.ksPValue = ksPValue;
+    }
+
+    /**
+     * @return the achieved rate divided by the requested one.
+     */
+    public double accuracy() {
+      return achievedRate / requestedRate;
+    }
+
+    public static String header() {
+      return "generator,requested_rps,achieved_rps,accuracy,samples,"
+             + "jitter_p50_us,jitter_p99_us,jitter_p999_us,jitter_max_us,ks_statistic,ks_p_value";
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s,%.0f,%.1f,%.4f,%d,%.1f,%.1f,%.1f,%.1f,%.5f,%.4g", generator, requestedRate,
+                           achievedRate, accuracy(), samples, jitter.getValueAtPercentile(50) / 1000.0,
+                           jitter.getValueAtPercentile(99) / 1000.0, jitter.getValueAtPercentile(99.9) / 1000.0,
+                           jitter.getMaxValue() / 1000.0, ksStatistic, ksPValue);
+    }
+  }
+
+  private static final class TimestampingRequestExecutor implements RequestExecutor<Integer, Void> {
+    private final long[] startNanos;
+
+    TimestampingRequestExecutor(final int requests) {
+      startNanos = new long[requests];
+    }
+
+    @Override
+    public Void execute(final long nanoTime, final Integer request) throws SuspendExecution, InterruptedException {
+      startNanos[request] = System.nanoTime();
+      return null;
+    }
+  }
+
+  private static final class RecordingIntervalGenerator implements IntervalGenerator {
+    private final IntervalGenerator generator;
+    private final long[] intervals;
+    private int count;
+
+    RecordingIntervalGenerator(final IntervalGenerator generator, final int requests) {
+      this.generator = generator;
+      intervals = new long[requests];
+    }
+
+    @Override
+    public long nextInterval(final long nanoTimeSinceStart) {
+      final long interval = generator.nextInterval(nanoTimeSinceStart);
+      if (count < intervals.length) {
+        intervals[count++] = interval;
+      }
+      return interval;
+    }
+
+    @Override
+    public double getRate() {
+      return generator.getRate();
+    }
+  }
+
+  private final FiberScheduler scheduler;
+  private final double warmupFraction;
+  private final Pacer pacer;
+
+  public RateAccuracy() {
+    this(DefaultFiberScheduler.getInstance(), 0.1, Pacer.PARK);
+  }
+
+  /**
+   * @param scheduler the scheduler of the load test fibers.
+   * @param warmupFraction the fraction of requests dispatched before measuring, to let the JIT
+   *                       compile the dispatch loop.
+   */
+  public RateAccuracy(final FiberScheduler scheduler, final double warmupFraction) {
+    this(scheduler, warmupFraction, Pacer.PARK);
+  }
+
+  /**
+   * @param scheduler the scheduler of the load test fibers.
+   * @param warmupFraction the fraction of requests dispatched before measuring, to let the JIT
+   *                       compile the dispatch loop.
+   * @param pacer how the dispatcher waits between requests.
+   */
+  public RateAccuracy(final FiberScheduler scheduler, final double warmupFraction, final Pacer pacer) {
+    this.scheduler = scheduler;
+    this.warmupFraction = warmupFraction;
+    this.pacer = pacer;
+  }
+
+  /**
+   * Runs a load test of the given number of requests and measures its accuracy.
+   *
+   * @param name the name of the generator in the result.
+   * @param generator the interval generator, which must produce the requested rate.
+   * @param requestedRate the rate the generator is expected to produce, in requests per second.
+   * @param samples the number of measured requests, after the warmup ones.
+   */
+  public Result measure(final String name,
+                        final IntervalGenerator generator,
+                        final double requestedRate,
+                        final int samples) throws InterruptedException
+  {
+    final int warmup = (int) (samples * warmupFraction);
+    final int total = warmup + samples;
+    final List<Integer> requests = new ArrayList<>(total);
+    for (int i = 0; i < total; i++) {
+      requests.add(i);
+    }
+    final TimestampingRequestExecutor executor = new TimestampingRequestExecutor(total);
+    final RecordingIntervalGenerator intervals = new RecordingIntervalGenerator(generator, total);
+
+    // Events are not needed, displacing them keeps sends from blocking and memory bounded
+    final Channel<TimingEvent<Void>> eventCh = Channels.newChannel(1024, Channels.OverflowPolicy.DISPLACE);
+    final LoadControl control = new LoadControl(intervals);
+    control.setPacer(pacer);
+    try {
+      new Fiber<Void>("jbender-rate-accuracy", scheduler, () -> {
+        JBender.loadTestThroughput(control, warmup, new ListReceivePort<>(requests), executor, eventCh, scheduler);
+      }).start().join();
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Load test failed", e.getCause());
+    }
+
+    return result(name, requestedRate, executor.startNanos, intervals.intervals, warmup);
+  }
+
+  static Result result(final String name,
+                       final double requestedRate,
+                       final long[] startNanos,
+                       final long[] intervals,
+                       final int warmup)
+  {
+    final int samples = startNanos.length - warmup;
+    final long[] achieved = new long[samples - 1];
+    final long[] intended = new long[samples - 1];
+    final Histogram jitter = new Histogram(3);
+    final long first = startNanos[warmup];
+    long intendedOffset = 0;
+    jitter.recordValue(0);
+    for (int i = 1; i < samples; i++) {
+      achieved[i - 1] = startNanos[warmup + i] - startNanos[warmup + i - 1];
+      intended[i - 1] = intervals[warmup + i];
+      intendedOffset += intervals[warmup + i];
+      jitter.recordValue(Math.max(0, startNanos[warmup + i] - first - intendedOffset));
+    }
+
+    final double achievedRate = (samples - 1) * 1e9 / (startNanos[startNanos.length - 1] - first);
+    final double d = ksStatistic(achieved, intended);
+    return new Result(name, requestedRate, achievedRate, samples, jitter, d, ksPValue(d, achieved.length, intended.length));
+  }
+
+  /**
+   * @return the two-sample Kolmogorov-Smirnov statistic of the given samples.
+   */
+  static double ksStatistic(final long[] a, final long[] b) {
+    final long[] x = a.clone();
+    final long[] y = b.clone();
+    Arrays.sort(x);
+    Arrays.sort(y);
+
+    int i = 0;
+    int j = 0;
+    double d = 0;
+    while (i < x.length && j < y.length) {
+      final long value = Math.min(x[i], y[j]);
+      while (i < x.length && x[i] == value) {
+        i++;
+      }
+      while (j < y.length && y[j] == value) {
+        j++;
+      }
+      d = Math.max(d, Math.abs((double) i / x.length - (double) j / y.length));
+    }
+    return d;
+  }
+
+  /**
+   * @return the asymptotic p-value of a two-sample Kolmogorov-Smirnov statistic, from the
+   *         Kolmogorov distribution.
+   */
+  static double ksPValue(final double d, final int n, final int m) {
+    final double en = Math.sqrt((double) n * m / (n + m));
+    final double lambda = (en + 0.12 + 0.11 / en) * d;
+    if (lambda < 0.2) {
+      return 1;
+    }
+    double sum = 0;
+    for (int k = 1; k <= 100; k++) {
+      final double term = Math.exp(-2 * k * k * lambda * lambda);
+      sum += (k % 2 == 1 ? 2 : -2) * term;
+      if (term < 1e-12) {
+        break;
+      }
+    }
+    return Math.max(0, Math.min(1, sum));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.accuracy;
+
+import co.paralleluniverse.fibers.DefaultFiberScheduler;
+import com.pinterest.jbender.Pacer;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import com.pinterest.jbender.intervals.ExponentialIntervalGenerator;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line tool measuring the rate accuracy of the throughput loop over a ladder of rates, for
+ * each interval generator, and writing a CSV report. Exits with status 1 if any achieved rate
+ * differs from the requested one by more than the tolerance.
+ *
+ * <pre>
+ *   RateAccuracyTool [--rates R,R,...] [--seconds S] [--tolerance FRACTION] [--out FILE]
+ *                    [--spin-us N] [--batch-us N] [--yield]
+ * </pre>
+ *
+ * The last options configure the Pacer of the dispatcher, which parks by default.
+ *
+ * Jitter is reported in microseconds. At high rates the dispatching fiber never yields, so the
+ * JVM should run with {@code -Dco.paralleluniverse.fibers.detectRunawayFibers=false}.
+ */
+public final class RateAccuracyTool {
+  private RateAccuracyTool() {}
+
+  public static void main(final String[] args) throws IOException, InterruptedException {
+    double[] rates = {1000, 10000, 100000, 1000000};
+    double seconds = 2;
+    double tolerance = 0.05;
+    String out = null;
+    long spinNanos = 0;
+    long batchNanos = 0;
+    boolean yield = false;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--rates":
+          final String[] values = args[++i].split(",");
+          rates = new double[values.length];
+          for (int r = 0; r < values.length; r++) {
+            rates[r] = Double.parseDouble(values[r]);
+          }
+          break;
+        case "--seconds":
+          seconds = Double.parseDouble(args[++i]);
+          break;
+        case "--tolerance":
+          tolerance = Double.parseDouble(args[++i]);
+          break;
+        case "--out":
+          out = args[++i];
+          break;
+        case "--spin-us":
+          spinNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(args[++i]));
+          break;
+        case "--batch-us":
+          batchNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(args[++i]));
+          break;
+        case "--yield":
+          yield = true;
+          break;
+        default:
+          System.err.println("Usage: RateAccuracyTool [--rates R,R,...] [--seconds S] "
+                             + "[--tolerance FRACTION] [--out FILE] [--spin-us N] [--batch-us N] [--yield]");
+          System.exit(2);
+      }
+    }
+
+    final RateAccuracy accuracy =
+        new RateAccuracy(DefaultFiberScheduler.getInstance(), 0.1, new Pacer(spinNanos, batchNanos, yield));
+    final List<RateAccuracy.Result> results = new ArrayList<>();
+    System.out.println(RateAccuracy.Result.header());
+    for (final double rate : rates) {
+      final int samples = (int) Math.max(1000, rate * seconds);
+      final RateAccuracy.Result constant =
+          accuracy.measure("constant", new ConstantIntervalGenerator((long) (1e9 / rate)), rate, samples);
+      System.out.println(constant);
+      results.add(constant);
+      final RateAccuracy.Result exponential =
+          accuracy.measure("exponential", new ExponentialIntervalGenerator(rate), rate, samples);
+      System.out.println(exponential);
+      results.add(exponential);
+    }
+
+    if (out != null) {
+      try (final PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8))) {
+        writer.println(RateAccuracy.Result.header());
+        for (final RateAccuracy.Result result : results) {
+          writer.println(result);
+        }
+      }
+    }
+
+    for (final RateAccuracy.Result result : results) {
+      if (Math.abs(1 - result.accuracy()) > tolerance) {
+        System.exit(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.distributed;
+
+/**
+ * The share of a distributed load test assigned to a worker by the coordinator.
+ */
+public final class Assignment {
+  // The index of the worker, from 0 to workerCount - 1
+  public final int workerIndex;
+  public final int workerCount;
+
+  // The throughput this worker must generate
+  public final double queriesPerSecond;
+
+  // The delay after which the worker must start, relative to receiving the assignment
+  public final long startDelayMillis;
+
+  public final long durationMillis;
+
+  // The value by which durations in nanoseconds are divided before being recorded
+  public final long scale;
+
+  // The period at which interval histograms are sent to the coordinator
+  public final long intervalMillis;
+
+  public Assignment(final int workerIndex,
+                    final int workerCount,
+                    final double queriesPerSecond,
+                    final long startDelayMillis,
+                    final long durationMillis,
+                    final long scale,
+                    final long intervalMillis)
+  {
+    this.workerIndex = workerIndex;
+    this.workerCount = workerCount;
+    this.queriesPerSecond = queriesPerSecond;
+    this.startDelayMillis = startDelayMillis;
+    this.durationMillis = durationMillis;
+    this.scale = scale;
+    this.intervalMillis = intervalMillis;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.distributed;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Coordinates a load test distributed over several workers (see Worker), possibly on different
+ * hosts, over plain TCP connections.
+ *
+ * Once the expected number of workers are connected, each of them is assigned an equal share of
+ * the total throughput and the same start delay, so that they start together. Workers then
+ * periodically send the compressed HdrHistogram of the durations recorded during the last
+ * interval, which are added into a single histogram: the percentiles of the merged histogram are
+ * those of all the requests, unlike averages of per-worker percentiles. The interval histograms
+ * can also be written to a single HdrHistogram log, tagged with the name of their worker.
+ */
+public class Coordinator implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(Coordinator.class);
+
+  private final ServerSocket server;
+  private final HistogramLogWriter intervalLog;
+
+  /**
+   * @param port the port to listen on for workers, 0 to use any free port.
+   */
+  public Coordinator(final int port) throws IOException {
+    this(port, null);
+  }
+
+  /**
+   * @param port the port to listen on for workers, 0 to use any free port.
+   * @param intervalLog an optional log into which the interval histograms of all workers are
+   *                    written, null for none.
+   */
+  public Coordinator(final int port, final HistogramLogWriter intervalLog) throws IOException {
+    this.server = new ServerSocket(port);
+    this.intervalLog = intervalLog;
+  }
+
+  /**
+   * @return the port workers must connect to.
+   */
+  public int port() {
+    return server.getLocalPort();
+  }
+
+  /**
+   * Run a distributed load test, recording durations in microseconds and receiving interval
+   * histograms every second.
+   *
+   * @see #run(int, double, long, long, long, long)
+   */
+  public DistributedResult run(final int workerCount,
+                               final double queriesPerSecond,
+                               final long startDelayMillis,
+                               final long durationMillis)
+      throws IOException, InterruptedException
+  {
+    return run(workerCount, queriesPerSecond, startDelayMillis, durationMillis, 1000, 1000);
+  }
+
+  /**
+   * Run a distributed load test, blocking until all the workers are done.
+   *
+   * @param workerCount the number of workers to wait for before starting.
+   * @param queriesPerSecond the total throughput, split equally among workers.
+   * @param startDelayMillis the delay after which workers start once assigned, which must cover
+   *                         the time to send the assignments.
+   * @param durationMillis the duration of the load test.
+   * @param scale the value by which workers divide durations in nanoseconds before recording
+   *              them, for example 1,000 to record microseconds.
+   * @param intervalMillis the period at which workers send their interval histograms.
+   * @return the merged result of all the workers.
+   */
+  public DistributedResult run(final int workerCount,
+                               final double queriesPerSecond,
+                               final long startDelayMillis,
+                               final long durationMillis,
+                               final long scale,
+                               final long intervalMillis)
+      throws IOException, InterruptedException
+  {
+    final List<Socket> sockets = new ArrayList<>(workerCount);
+    final List<String> names = new ArrayList<>(workerCount);
+    final ExecutorService readers = Executors.newFixedThreadPool(workerCount);
+    try {
+      final List<DataInputStream> ins = new ArrayList<>(workerCount);
+      final List<DataOutputStream> outs = new ArrayList<>(workerCount);
+      while (sockets.size() < workerCount) {
+        final Socket socket = server.accept();
+        sockets.add(socket);
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Protocol.expect(in, Protocol.HELLO);
+        names.add(in.readUTF());
+        ins.add(in);
+        outs.add(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+        LOG.info("Worker {} connected from {}", names.get(names.size() - 1), socket.getRemoteSocketAddress());
+      }
+
+      for (int i = 0; i < workerCount; i++) {
+        Protocol.writeStart(outs.get(i), new Assignment(i, workerCount, queriesPerSecond / workerCount,
+                                                        startDelayMillis, durationMillis, scale, intervalMillis));
+      }
+
+      final Histogram merged = new Histogram(3);
+      final List<Future<long[]>> results = new ArrayList<>(workerCount);
+      for (int i = 0; i < workerCount; i++) {
+        final DataInputStream in = ins.get(i);
+        final String tag = names.get(i).replaceAll("[,\\s]", "_");
+        results.add(readers.submit(() -> readWorker(in, tag, merged)));
+      }
+
+      long errorCount = 0;
+      long elapsedNanos = 0;
+      for (int i = 0; i < workerCount; i++) {
+        final long[] result;
+        try {
+          result = results.get(i).get();
+        } catch (final ExecutionException e) {
+          throw new IOException("Worker " + names.get(i) + " failed", e.getCause());
+        }
+        errorCount += result[0];
+        elapsedNanos = Math.max(elapsedNanos, result[1]);
+      }
+
+      return new DistributedResult(merged, errorCount, elapsedNanos, Collections.unmodifiableList(names));
+    } finally {
+      readers.shutdownNow();
+      for (final Socket socket : sockets) {
+        socket.close();
+      }
+    }
+  }
+
+  /**
+   * Reads the messages of a worker until it is done, merging its interval histograms.
+   *
+   * @return the error count and elapsed time of the worker.
+   */
+  private long[] readWorker(final DataInputStream in, final String tag, final Histogram merged) throws IOException {
+    long errorCount = 0;
+    while (true) {
+      final byte type = in.readByte();
+      if (type == Protocol.DONE) {
+        return new long[] { errorCount, in.readLong() };
+      }
+      if (type != Protocol.INTERVAL) {
+        throw new IOException("Unexpected message type " + (char) type);
+      }
+
+      errorCount += in.readLong();
+      final Histogram interval = Protocol.readHistogram(in);
+      interval.setTag(tag);
+      synchronized (merged) {
+        merged.add(interval);
+        if (intervalLog != null) {
+          intervalLog.outputIntervalHistogram(interval);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.distributed;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.List;
+
+/**
+ * The merged result of a distributed load test.
+ */
+public final class DistributedResult {
+  // The durations recorded by all workers, merged without loss of precision
+  public final Histogram histogram;
+
+  // The number of errors reported by all workers
+  public final long errorCount;
+
+  // The longest run time reported by a worker
+  public final long elapsedNanos;
+
+  // The names of the workers, in the order of their index
+  public final List<String> workers;
+
+  public DistributedResult(final Histogram histogram,
+                           final long errorCount,
+                           final long elapsedNanos,
+                           final List<String> workers)
+  {
+    this.histogram = histogram;
+    this.errorCount = errorCount;
+    this.elapsedNanos = elapsedNanos;
+    this.workers = workers;
+  }
+
+  /**
+   * @return the achieved throughput of all workers together, in requests per second.
+   */
+  public double throughput() {
+    return elapsedNanos > 0 ? histogram.getTotalCount() * 1e9 / elapsedNanos : 0;
+  }
+}
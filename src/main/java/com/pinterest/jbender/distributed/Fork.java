@@ -0,0 +1,139 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.distributed;
+
+import org.HdrHistogram.HistogramLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a load test in several child JVMs on the local host, each generating a share of the total
+ * throughput, so that a single host can use all its cores with small heaps and short GC pauses.
+ *
+ * Each child runs the given main class, with the class path and javaagent options (such as the
+ * Quasar agent) of this JVM followed by the given JVM options, and the arguments
+ * {@code <host> <port> <name>}, with which it must create and run a Worker. The results of the
+ * children are merged by a Coordinator in this JVM.
+ */
+public class Fork {
+  private static final Logger LOG = LoggerFactory.getLogger(Fork.class);
+
+  private final Class<?> mainClass;
+  private final int forks;
+  private final List<String> jvmOptions;
+  private final HistogramLogWriter intervalLog;
+
+  /**
+   * @param mainClass the main class of the children, running a Worker.
+   * @param forks the number of child JVMs.
+   * @param jvmOptions additional options for the child JVMs, for example the heap size.
+   * @param intervalLog an optional log into which the interval histograms of all children are
+   *                    written, null for none.
+   */
+  public Fork(final Class<?> mainClass,
+              final int forks,
+              final List<String> jvmOptions,
+              final HistogramLogWriter intervalLog)
+  {
+    this.mainClass = mainClass;
+    this.forks = forks;
+    this.jvmOptions = jvmOptions;
+    this.intervalLog = intervalLog;
+  }
+
+  /**
+   * Starts the children and runs the load test, blocking until all of them are done.
+   *
+   * @param queriesPerSecond the total throughput, split equally among children.
+   * @param durationMillis the duration of the load test.
+   * @param scale the value by which durations in nanoseconds are divided before being recorded.
+   * @param intervalMillis the period at which children report their interval histograms.
+   * @return the merged result of all the children.
+   */
+  // The watchers close the coordinator early, from inside its try-with-resources block
+  @SuppressWarnings("try")
+  public DistributedResult run(final double queriesPerSecond,
+                               final long durationMillis,
+                               final long scale,
+                               final long intervalMillis)
+      throws IOException, InterruptedException
+  {
+    final List<Process> children = new ArrayList<>(forks);
+    try (final Coordinator coordinator = new Coordinator(0, intervalLog)) {
+      for (int i = 0; i < forks; i++) {
+        final Process child = new ProcessBuilder(command(coordinator.port(), "fork-" + i)).inheritIO().start();
+        children.add(child);
+
+        // Stop waiting for workers if a child exits abnormally: closing the coordinator makes a run
+        // still accepting them fail, and closing it again at the end of the block is harmless
+        final Thread watcher = new Thread(() -> {
+          try {
+            if (child.waitFor() != 0) {
+              coordinator.close();
+            }
+          } catch (final InterruptedException | IOException e) {
+            // Nothing to do, the load test is over
+          }
+        }, "jbender-fork-watcher-" + i);
+        watcher.setDaemon(true);
+        watcher.start();
+      }
+
+      // All children are connected when assignments are sent, so they only need a short delay to start together
+      final DistributedResult result = coordinator.run(forks, queriesPerSecond, 100, durationMillis, scale, intervalMillis);
+      for (final Process child : children) {
+        final int exitValue = child.waitFor();
+        if (exitValue != 0) {
+          throw new IOException("Child JVM exited with status " + exitValue);
+        }
+      }
+      return result;
+    } catch (final IOException e) {
+      for (final Process child : children) {
+        if (!child.isAlive() && child.exitValue() != 0) {
+          throw new IOException("Child JVM exited with status " + child.exitValue(), e);
+        }
+      }
+      throw e;
+    } finally {
+      for (final Process child : children) {
+        child.destroyForcibly();
+      }
+    }
+  }
+
+  private List<String> command(final int port, final String name) {
+    final List<String> command = new ArrayList<>();
+    command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    for (final String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+      if (arg.startsWith("-javaagent:")) {
+        command.add(arg);
+      }
+    }
+    command.addAll(jvmOptions);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(mainClass.getName());
+    command.add("localhost");
+    command.add(Integer.toString(port));
+    command.add(name);
+    LOG.debug("Starting child JVM: {}", command);
+    return command;
+  }
+}
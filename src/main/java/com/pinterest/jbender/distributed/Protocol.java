@@ -0,0 +1,102 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.distributed;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+/**
+ * Wire protocol between coordinator and workers: length-delimited messages over a plain TCP
+ * connection, each starting with a type byte.
+ *
+ * <pre>
+ *   worker -> coordinator  HELLO    name
+ *   coordinator -> worker  START    assignment
+ *   worker -> coordinator  INTERVAL error count, start and end time, compressed histogram (repeated)
+ *   worker -> coordinator  DONE     elapsed nanoseconds
+ * </pre>
+ */
+final class Protocol {
+  static final byte HELLO = 'H';
+  static final byte START = 'S';
+  static final byte INTERVAL = 'I';
+  static final byte DONE = 'D';
+
+  private Protocol() {}
+
+  static void writeStart(final DataOutputStream out, final Assignment a) throws IOException {
+    out.writeByte(START);
+    out.writeInt(a.workerIndex);
+    out.writeInt(a.workerCount);
+    out.writeDouble(a.queriesPerSecond);
+    out.writeLong(a.startDelayMillis);
+    out.writeLong(a.durationMillis);
+    out.writeLong(a.scale);
+    out.writeLong(a.intervalMillis);
+    out.flush();
+  }
+
+  static Assignment readStart(final DataInputStream in) throws IOException {
+    expect(in, START);
+    return new Assignment(in.readInt(), in.readInt(), in.readDouble(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+  }
+
+  static void writeInterval(final DataOutputStream out, final long errorCount, final Histogram h) throws IOException {
+    final ByteBuffer buf = ByteBuffer.allocate(h.getNeededByteBufferCapacity());
+    final int len = h.encodeIntoCompressedByteBuffer(buf);
+    out.writeByte(INTERVAL);
+    out.writeLong(errorCount);
+    out.writeLong(h.getStartTimeStamp());
+    out.writeLong(h.getEndTimeStamp());
+    out.writeInt(len);
+    out.write(buf.array(), 0, len);
+    out.flush();
+  }
+
+  static void writeDone(final DataOutputStream out, final long elapsedNanos) throws IOException {
+    out.writeByte(DONE);
+    out.writeLong(elapsedNanos);
+    out.flush();
+  }
+
+  /**
+   * Reads the histogram of an INTERVAL message, following its error count.
+   */
+  static Histogram readHistogram(final DataInputStream in) throws IOException {
+    final long startTimeStamp = in.readLong();
+    final long endTimeStamp = in.readLong();
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    final Histogram h;
+    try {
+      h = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+    } catch (final DataFormatException e) {
+      throw new IOException("Invalid histogram", e);
+    }
+    h.setStartTimeStamp(startTimeStamp);
+    h.setEndTimeStamp(endTimeStamp);
+    return h;
+  }
+
+  static void expect(final DataInputStream in, final byte type) throws IOException {
+    final byte actual = in.readByte();
+    if (actual != type) {
+      throw new IOException("Unexpected message type " + (char) actual + ", expected " + (char) type);
+    }
+  }
+}
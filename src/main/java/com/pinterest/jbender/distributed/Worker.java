@@ -0,0 +1,192 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.distributed;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import co.paralleluniverse.strands.channels.ReceivePort;
+import com.pinterest.jbender.JBender;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.intervals.ExponentialIntervalGenerator;
+import com.pinterest.jbender.intervals.IntervalGenerator;
+import com.pinterest.jbender.util.DeadlineReceivePort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleFunction;
+import java.util.function.Function;
+
+/**
+ * Runs the share of a distributed load test assigned by a Coordinator.
+ *
+ * The worker connects to the coordinator, waits for its assignment, runs a throughput load test
+ * at the assigned rate for the assigned duration and streams back the compressed HdrHistogram of
+ * the durations recorded during each interval.
+ *
+ * @param <Req> the request type.
+ * @param <Res> the response type.
+ */
+public class Worker<Req, Res> {
+  private static final Logger LOG = LoggerFactory.getLogger(Worker.class);
+
+  private final String host;
+  private final int port;
+  private final String name;
+  private final DoubleFunction<IntervalGenerator> intervalGen;
+  private final Function<Assignment, ReceivePort<Req>> requests;
+  private final RequestExecutor<Req, Res> executor;
+
+  /**
+   * @param host the host of the coordinator.
+   * @param port the port of the coordinator.
+   * @param name the name of this worker, reported by the coordinator.
+   * @param intervalGen provides the interval generator for the assigned throughput.
+   * @param requests provides the requests channel for the assignment, for example a slice of a
+   *                 shared request source based on the worker index. The load test stops at the
+   *                 end of the assigned duration or when this channel is closed.
+   * @param executor executes the requests provided by the requests channel.
+   */
+  public Worker(final String host,
+                final int port,
+                final String name,
+                final DoubleFunction<IntervalGenerator> intervalGen,
+                final Function<Assignment, ReceivePort<Req>> requests,
+                final RequestExecutor<Req, Res> executor)
+  {
+    this.host = host;
+    this.port = port;
+    this.name = name;
+    this.intervalGen = intervalGen;
+    this.requests = requests;
+    this.executor = executor;
+  }
+
+  /**
+   * @param host the host of the coordinator.
+   * @param port the port of the coordinator.
+   * @param name the name of this worker, reported by the coordinator.
+   * @param intervalGen provides the interval generator for the assigned throughput.
+   * @param requests provides requests for the load test, which stops at the end of the assigned
+   *                 duration or when this channel is closed.
+   * @param executor executes the requests provided by the requests channel.
+   */
+  public Worker(final String host,
+                final int port,
+                final String name,
+                final DoubleFunction<IntervalGenerator> intervalGen,
+                final ReceivePort<Req> requests,
+                final RequestExecutor<Req, Res> executor)
+  {
+    this(host, port, name, intervalGen, assignment -> requests, executor);
+  }
+
+  /**
+   * Creates a worker named after the local host, with exponentially distributed intervals.
+   */
+  public Worker(final String host,
+                final int port,
+                final ReceivePort<Req> requests,
+                final RequestExecutor<Req, Res> executor)
+      throws IOException
+  {
+    this(host, port, InetAddress.getLocalHost().getHostName(), ExponentialIntervalGenerator::new, requests, executor);
+  }
+
+  /**
+   * Connects to the coordinator and runs the assigned load test, blocking until it is done.
+   */
+  public void run() throws IOException, InterruptedException, ExecutionException {
+    try (final Socket socket = new Socket(host, port)) {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeByte(Protocol.HELLO);
+      out.writeUTF(name);
+      out.flush();
+
+      final Assignment assignment = Protocol.readStart(in);
+      LOG.info("Worker {} assigned {} queries per second for {} ms",
+               name, assignment.queriesPerSecond, assignment.durationMillis);
+      Thread.sleep(assignment.startDelayMillis);
+
+      final org.HdrHistogram.Recorder histograms = new org.HdrHistogram.Recorder(3);
+      final LongAdder errors = new LongAdder();
+      final Channel<TimingEvent<Res>> eventCh = Channels.newChannel(-1);
+      final Fiber<Void> recorder = Recorder.record(eventCh, e -> {
+        histograms.recordValue(e.durationNanos / assignment.scale);
+        if (!e.isSuccess) {
+          errors.increment();
+        }
+      });
+
+      // Write interval histograms from a single thread, which also writes the last one and DONE once
+      // the load test is done, so that writes to the stream never overlap
+      final AtomicReference<IOException> sendFailure = new AtomicReference<>();
+      final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+      reporter.scheduleAtFixedRate(() -> {
+        try {
+          Protocol.writeInterval(out, errors.sumThenReset(), histograms.getIntervalHistogram());
+        } catch (final IOException e) {
+          sendFailure.compareAndSet(null, e);
+        }
+      }, assignment.intervalMillis, assignment.intervalMillis, TimeUnit.MILLISECONDS);
+
+      final long startNanos = System.nanoTime();
+      final ReceivePort<Req> timedRequests =
+          new DeadlineReceivePort<>(requests.apply(assignment), startNanos + TimeUnit.MILLISECONDS.toNanos(assignment.durationMillis));
+      final IntervalGenerator gen = intervalGen.apply(assignment.queriesPerSecond);
+      try {
+        new Fiber<Void>("jbender-worker", () -> {
+          JBender.loadTestThroughput(gen, 0, timedRequests, executor, eventCh);
+        }).start().join();
+        recorder.join();
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        final Future<Void> done = reporter.submit(() -> {
+          if (sendFailure.get() != null) {
+            throw sendFailure.get();
+          }
+          Protocol.writeInterval(out, errors.sumThenReset(), histograms.getIntervalHistogram());
+          Protocol.writeDone(out, elapsedNanos);
+          return null;
+        });
+        try {
+          done.get();
+        } catch (final ExecutionException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+          }
+          throw e;
+        }
+      } finally {
+        reporter.shutdownNow();
+      }
+    }
+  }
+}
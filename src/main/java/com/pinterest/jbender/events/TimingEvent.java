@@ -14,6 +14,8 @@ package com.pinterest.jbender.events;
 
 import com.google.common.base.MoreObjects;
 
+import java.util.Arrays;
+
 /**
  * TimingEvents collect timing information and result data for a single request from the load
  * tester.
@@ -28,39 +30,94 @@ public class TimingEvent<T> {
   public final Exception exception;
   public final T response;
 
-  private TimingEvent(final long waitNanos,
-                      final long durationNanos,
-                      long overageNanos,
-                      final T response,
-                      final Exception exc)
+  // Optional per-phase durations filled in by a PhaseTimedRequestExecutor, indexed as described by
+  // its phaseNames(); a negative value means the phase was not observed. Null if not available.
+  public final long[] phaseNanos;
+
+  // Optional label of the request (e.g. endpoint or scenario step name), null if unlabeled.
+  public final String label;
+
+  // The System#nanoTime at which the request started.
+  public final long startNanos;
+
+  /**
+   * Full constructor; {@code exc} must be null for successful requests.
+   */
+  public TimingEvent(final String label,
+                     final long startNanos,
+                     final long waitNanos,
+                     final long durationNanos,
+                     long overageNanos,
+                     final T response,
+                     final Exception exc,
+                     final long[] phaseNanos)
   {
+    this.label = label;
+    this.startNanos = startNanos;
     this.response = response;
     this.exception = exc;
     this.waitNanos = waitNanos;
     this.durationNanos = durationNanos;
     this.overageNanos = overageNanos;
     this.isSuccess = exc == null;
+    this.phaseNanos = phaseNanos;
+  }
+
+  /**
+   * Constructor for an event created as soon as its request completes, the start time of the
+   * request being derived from its duration.
+   */
+  public TimingEvent(final String label,
+                     final long waitNanos,
+                     final long durationNanos,
+                     long overageNanos,
+                     final T response,
+                     final Exception exc,
+                     final long[] phaseNanos)
+  {
+    this(label, System.nanoTime() - durationNanos, waitNanos, durationNanos, overageNanos, response, exc, phaseNanos);
   }
 
   public TimingEvent(
       final long waitNanos, final long durationNanos, long overageNanos, final T response) {
-    this(waitNanos, durationNanos, overageNanos, response, null);
+    this(null, waitNanos, durationNanos, overageNanos, response, null, null);
   }
 
   public TimingEvent(
       final long waitNanos, final long durationNanos, long overageNanos, final Exception exc) {
-    this(waitNanos, durationNanos, overageNanos, null, exc);
+    this(null, waitNanos, durationNanos, overageNanos, null, exc, null);
+  }
+
+  public TimingEvent(final long waitNanos,
+                     final long durationNanos,
+                     long overageNanos,
+                     final T response,
+                     final long[] phaseNanos)
+  {
+    this(null, waitNanos, durationNanos, overageNanos, response, null, phaseNanos);
+  }
+
+  public TimingEvent(final long waitNanos,
+                     final long durationNanos,
+                     long overageNanos,
+                     final Exception exc,
+                     final long[] phaseNanos)
+  {
+    this(null, waitNanos, durationNanos, overageNanos, null, exc, phaseNanos);
   }
 
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
+        .add("label", label)
+        .add("startNanos", startNanos)
         .add("waitNanos", waitNanos)
         .add("durationNanos", durationNanos)
         .add("overageNanos", overageNanos)
         .add("isSuccess", isSuccess)
         .add("exception", exception)
         .add("response", response)
+        .add("phaseNanos", Arrays.toString(phaseNanos))
         .toString();
   }
 }
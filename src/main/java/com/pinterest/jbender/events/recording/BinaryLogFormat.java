@@ -0,0 +1,50 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+/**
+ * Layout of the binary event logs written by BinaryLogRecorder and read by BinaryLogReader.
+ *
+ * A log is a sequence of files {@code <prefix>-00000.jbl}, {@code <prefix>-00001.jbl}, ... of a
+ * fixed size, each made of a header and fixed-width records, plus a dictionary file
+ * {@code <prefix>.dict} mapping label and exception ids to names, one per line as
+ * {@code L|E <tab> id <tab> name}.
+ *
+ * <pre>
+ *   header: int magic, int record size, long base epoch millis, long base nanoTime, long record count
+ *   record: long intended start, long actual start (both nanoseconds since the base nanoTime),
+ *           long duration nanoseconds, int outcome, int label id (0 if unlabeled)
+ * </pre>
+ *
+ * The outcome is 0 for a success, the HTTP status code for an HTTP response, or the negated id of
+ * the exception class for a failure.
+ */
+final class BinaryLogFormat {
+  static final int MAGIC = 0x4A424C31;
+  static final int HEADER_SIZE = 32;
+  static final int RECORD_SIZE = 32;
+  static final int COUNT_OFFSET = 24;
+
+  static final String LABEL = "L";
+  static final String EXCEPTION = "E";
+
+  private BinaryLogFormat() {}
+
+  static String file(final String prefix, final int index) {
+    return String.format("%s-%05d.jbl", prefix, index);
+  }
+
+  static String dictionary(final String prefix) {
+    return prefix + ".dict";
+  }
+}
@@ -0,0 +1,131 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the binary event logs written by BinaryLogRecorder.
+ */
+public class BinaryLogReader {
+  /**
+   * Receives the records of a log, in order.
+   */
+  @FunctionalInterface
+  public interface RecordVisitor {
+    /**
+     * @param intendedStartNanos the time the request should have started, in nanoseconds since the
+     *                           start of the log.
+     * @param startNanos the time the request started, in nanoseconds since the start of the log.
+     * @param durationNanos the duration of the request.
+     * @param outcome 0 for a success, the HTTP status code of an HTTP response, or the negated id
+     *                of the exception class of a failure (see #exceptionName).
+     * @param labelId the id of the label of the request (see #label), 0 if unlabeled.
+     */
+    void visit(long intendedStartNanos, long startNanos, long durationNanos, int outcome, int labelId);
+  }
+
+  private final String prefix;
+  private final Map<Integer, String> labels = new HashMap<>();
+  private final Map<String, Integer> labelIds = new HashMap<>();
+  private final Map<Integer, String> exceptions = new HashMap<>();
+  private long baseEpochMillis;
+
+  /**
+   * @param prefix the path prefix of the log files, as given to BinaryLogRecorder.
+   */
+  public BinaryLogReader(final String prefix) throws IOException {
+    this.prefix = prefix;
+    for (final String line : Files.readAllLines(Paths.get(BinaryLogFormat.dictionary(prefix)), StandardCharsets.UTF_8)) {
+      final String[] fields = line.split("\t", 3);
+      final int id = Integer.parseInt(fields[1]);
+      if (BinaryLogFormat.LABEL.equals(fields[0])) {
+        labels.put(id, fields[2]);
+        labelIds.put(fields[2], id);
+      } else if (BinaryLogFormat.EXCEPTION.equals(fields[0])) {
+        exceptions.put(id, fields[2]);
+      }
+    }
+  }
+
+  /**
+   * @return the label with the given id, null if unlabeled or unknown.
+   */
+  public String label(final int labelId) {
+    return labels.get(labelId);
+  }
+
+  /**
+   * @return the id of the given label, -1 if it does not appear in the log.
+   */
+  public int labelId(final String label) {
+    final Integer id = labelIds.get(label);
+    return id != null ? id : -1;
+  }
+
+  /**
+   * @return the name of the exception class of a failure outcome, null if not a failure.
+   */
+  public String exceptionName(final int outcome) {
+    return outcome < 0 ? exceptions.get(-outcome) : null;
+  }
+
+  /**
+   * @return the wall clock time of the start of the log, available once read.
+   */
+  public long baseEpochMillis() {
+    return baseEpochMillis;
+  }
+
+  /**
+   * Reads all the records of the log.
+   *
+   * @return the number of records read.
+   */
+  public long read(final RecordVisitor visitor) throws IOException {
+    long total = 0;
+    for (int i = 0; ; i++) {
+      final Path path = Paths.get(BinaryLogFormat.file(prefix, i));
+      if (!Files.exists(path)) {
+        return total;
+      }
+
+      try (final FileChannel channel = FileChannel.open(path)) {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.getInt() != BinaryLogFormat.MAGIC) {
+          throw new IOException("Not a binary event log: " + path);
+        }
+        final int recordSize = buffer.getInt();
+        baseEpochMillis = buffer.getLong();
+        buffer.getLong();
+        final long count = buffer.getLong();
+
+        for (long n = 0; n < count; n++) {
+          final int position = BinaryLogFormat.HEADER_SIZE + (int) n * recordSize;
+          visitor.visit(buffer.getLong(position), buffer.getLong(position + 8), buffer.getLong(position + 16),
+                        buffer.getInt(position + 24), buffer.getInt(position + 28));
+        }
+        total += count;
+      }
+    }
+  }
+}
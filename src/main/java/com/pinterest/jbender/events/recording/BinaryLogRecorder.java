@@ -0,0 +1,148 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.apache.http.HttpResponse;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends a fixed-width binary record for each TimingEvent to memory-mapped files, rolling to a new
+ * file when the current one is full (see BinaryLogFormat for the layout). Records are written into
+ * the mapped memory without allocating, and flushed to disk by the operating system or when a file
+ * is complete; new labels and exception classes are appended to the dictionary file as they are
+ * first seen. Logs can be analyzed afterwards with BinaryLogReader or BinaryLogTool.
+ */
+public class BinaryLogRecorder implements Recorder, Closeable {
+  private final String prefix;
+  private final long fileSize;
+  private final long baseNanos;
+  private final long baseEpochMillis;
+  private final Writer dictionary;
+  private final Map<String, Integer> labels = new HashMap<>();
+  private final Map<Class<?>, Integer> exceptions = new HashMap<>();
+
+  private int fileIndex;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private long count;
+
+  /**
+   * Creates a log with files of 64 MB (about two million records each).
+   */
+  public BinaryLogRecorder(final String prefix) throws IOException {
+    this(prefix, 64 << 20);
+  }
+
+  /**
+   * @param prefix the path prefix of the log files.
+   * @param fileSize the size of each file.
+   */
+  public BinaryLogRecorder(final String prefix, final long fileSize) throws IOException {
+    this.prefix = prefix;
+    this.fileSize = fileSize;
+    this.baseNanos = System.nanoTime();
+    this.baseEpochMillis = System.currentTimeMillis();
+    this.dictionary = new BufferedWriter(Files.newBufferedWriter(Paths.get(BinaryLogFormat.dictionary(prefix)),
+                                                                 StandardCharsets.UTF_8));
+    map();
+  }
+
+  private void map() throws IOException {
+    channel = FileChannel.open(Paths.get(BinaryLogFormat.file(prefix, fileIndex)),
+                               StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    buffer.putInt(BinaryLogFormat.MAGIC);
+    buffer.putInt(BinaryLogFormat.RECORD_SIZE);
+    buffer.putLong(baseEpochMillis);
+    buffer.putLong(baseNanos);
+    buffer.putLong(0);
+    count = 0;
+  }
+
+  private void unmap() throws IOException {
+    buffer.force();
+    channel.close();
+  }
+
+  @Override
+  public void record(final TimingEvent e) {
+    try {
+      if (buffer.remaining() < BinaryLogFormat.RECORD_SIZE) {
+        unmap();
+        fileIndex++;
+        map();
+      }
+
+      final long start = e.startNanos - baseNanos;
+      buffer.putLong(start - Math.max(e.overageNanos, 0));
+      buffer.putLong(start);
+      buffer.putLong(e.durationNanos);
+      buffer.putInt(outcome(e));
+      buffer.putInt(e.label != null ? labelId(e.label) : 0);
+      buffer.putLong(BinaryLogFormat.COUNT_OFFSET, ++count);
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private int outcome(final TimingEvent<?> e) throws IOException {
+    if (e.isSuccess) {
+      return e.response instanceof HttpResponse ? ((HttpResponse) e.response).getStatusLine().getStatusCode() : 0;
+    }
+
+    final Class<?> c = e.exception != null ? e.exception.getClass() : Exception.class;
+    Integer id = exceptions.get(c);
+    if (id == null) {
+      id = exceptions.size() + 1;
+      exceptions.put(c, id);
+      define(BinaryLogFormat.EXCEPTION, id, c.getName());
+    }
+    return -id;
+  }
+
+  private int labelId(final String label) throws IOException {
+    Integer id = labels.get(label);
+    if (id == null) {
+      id = labels.size() + 1;
+      labels.put(label, id);
+      define(BinaryLogFormat.LABEL, id, label);
+    }
+    return id;
+  }
+
+  private void define(final String kind, final int id, final String name) throws IOException {
+    dictionary.write(kind + "\t" + id + "\t" + name + "\n");
+    dictionary.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    unmap();
+    dictionary.close();
+  }
+}
@@ -0,0 +1,140 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line tool rebuilding latency histograms from a binary event log, optionally restricted
+ * to a time window and a label.
+ *
+ * <pre>
+ *   BinaryLogTool &lt;prefix&gt; [--from SECONDS] [--to SECONDS] [--label LABEL] [--scale NANOS] [--intended]
+ * </pre>
+ *
+ * The window applies to the intended start times, in seconds since the start of the log. With
+ * {@code --intended}, latencies are measured from the intended start of each request rather than
+ * its actual start, which includes the delay of late dispatches. Durations are divided by the
+ * scale (1,000 by default, i.e. microseconds). HTTP responses with a status of 400 or more are
+ * counted as failures.
+ */
+public final class BinaryLogTool {
+  private BinaryLogTool() {}
+
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: BinaryLogTool <prefix> [--from SECONDS] [--to SECONDS] [--label LABEL] "
+                         + "[--scale NANOS] [--intended]");
+      System.exit(2);
+    }
+
+    double from = 0;
+    double to = Double.POSITIVE_INFINITY;
+    String label = null;
+    long scale = 1000;
+    boolean intended = false;
+    for (int i = 1; i < args.length; i++) {
+      switch (args[i]) {
+        case "--from":
+          from = Double.parseDouble(args[++i]);
+          break;
+        case "--to":
+          to = Double.parseDouble(args[++i]);
+          break;
+        case "--label":
+          label = args[++i];
+          break;
+        case "--scale":
+          scale = Long.parseLong(args[++i]);
+          break;
+        case "--intended":
+          intended = true;
+          break;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          System.exit(2);
+      }
+    }
+
+    final BinaryLogReader reader = new BinaryLogReader(args[0]);
+    final Slice slice = new Slice((long) (from * TimeUnit.SECONDS.toNanos(1)),
+                                  to == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : (long) (to * TimeUnit.SECONDS.toNanos(1)),
+                                  label != null ? reader.labelId(label) : 0, label != null, scale, intended);
+    reader.read(slice);
+    slice.print(reader, System.out);
+  }
+
+  /**
+   * Histograms and outcome counts of the records in a time window, optionally with a given label.
+   */
+  static final class Slice implements BinaryLogReader.RecordVisitor {
+    private final long fromNanos;
+    private final long toNanos;
+    private final int labelId;
+    private final boolean byLabel;
+    private final long scale;
+    private final boolean intended;
+
+    final Histogram successes = new Histogram(3);
+    final Histogram failures = new Histogram(3);
+    final Map<Integer, Long> outcomes = new TreeMap<>();
+
+    Slice(final long fromNanos,
+          final long toNanos,
+          final int labelId,
+          final boolean byLabel,
+          final long scale,
+          final boolean intended)
+    {
+      this.fromNanos = fromNanos;
+      this.toNanos = toNanos;
+      this.labelId = labelId;
+      this.byLabel = byLabel;
+      this.scale = scale;
+      this.intended = intended;
+    }
+
+    @Override
+    public void visit(final long intendedStartNanos, final long startNanos, final long durationNanos,
+                      final int outcome, final int labelId) {
+      if (intendedStartNanos < fromNanos || intendedStartNanos >= toNanos || (byLabel && labelId != this.labelId)) {
+        return;
+      }
+
+      final long latency = intended ? startNanos + durationNanos - intendedStartNanos : durationNanos;
+      (outcome >= 0 && outcome < 400 ? successes : failures).recordValue(latency / scale);
+      outcomes.merge(outcome, 1L, Long::sum);
+    }
+
+    void print(final BinaryLogReader reader, final PrintStream out) {
+      out.println("Outcomes:");
+      for (final Map.Entry<Integer, Long> e : outcomes.entrySet()) {
+        final int outcome = e.getKey();
+        final String name = outcome < 0 ? reader.exceptionName(outcome) : outcome == 0 ? "ok" : "http_" + outcome;
+        out.println("  " + name + ": " + e.getValue());
+      }
+      out.println("Successes:");
+      successes.outputPercentileDistribution(out, 1.0);
+      if (failures.getTotalCount() > 0) {
+        out.println("Failures:");
+        failures.outputPercentileDistribution(out, 1.0);
+      }
+    }
+  }
+}
@@ -68,4 +68,18 @@ public class HdrHistogramRecorder implements Recorder {
 
     endNanos = System.nanoTime();
   }
+
+  /**
+   * Adds the events seen by another recorder to this one, for example to merge the shards of a
+   * partitioned load test once it is over.
+   */
+  public void add(final HdrHistogramRecorder other) {
+    histogram.add(other.histogram);
+    errorCount += other.errorCount;
+    if (other.started) {
+      startNanos = started ? Math.min(startNanos, other.startNanos) : other.startNanos;
+      endNanos = started ? Math.max(endNanos, other.endNanos) : other.endNanos;
+      started = true;
+    }
+  }
 }
@@ -0,0 +1,65 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records TimingEvents in a separate HdrHistogramRecorder for each label (see TimingEvent#label),
+ * so that histograms and error counts are available per endpoint or scenario step.
+ */
+public class LabeledHdrHistogramRecorder implements Recorder {
+  // The label under which unlabeled events are recorded
+  public static final String UNLABELED = "";
+
+  private final Supplier<Histogram> histogramFactory;
+  private final long scale;
+
+  // The recorder of each label seen so far, in order of appearance
+  public final Map<String, HdrHistogramRecorder> recorders = new LinkedHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param histogramFactory creates the histogram of each new label.
+   * @param scale the value by which to divide the durationNanos field of each TimingEvent before
+   *              recording it, see HdrHistogramRecorder.
+   */
+  public LabeledHdrHistogramRecorder(final Supplier<Histogram> histogramFactory, final long scale) {
+    this.histogramFactory = histogramFactory;
+    this.scale = scale;
+  }
+
+  /**
+   * The recorder for the given label, or null if no event with that label has been recorded.
+   */
+  public HdrHistogramRecorder recorder(final String label) {
+    return recorders.get(label != null ? label : UNLABELED);
+  }
+
+  @Override
+  public void record(final TimingEvent e) {
+    final String label = e.label != null ? e.label : UNLABELED;
+    HdrHistogramRecorder r = recorders.get(label);
+    if (r == null) {
+      r = new HdrHistogramRecorder(histogramFactory.get(), scale);
+      recorders.put(label, r);
+    }
+    r.record(e);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.executors.ValidationException;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Classifies the outcome of a request, for example to count outcomes by class.
+ */
+@FunctionalInterface
+public interface OutcomeClassifier {
+  String OK = "ok";
+  String TIMEOUT = "timeout";
+  String CONNECT = "connect";
+  String VALIDATION = "validation";
+
+  /**
+   * Default classifier: successful requests are "ok", or "http_" followed by the status code for
+   * HTTP responses; failures are "validation" for responses that failed validation (see
+   * ValidationStage), "connect" for connection failures (including connect timeouts), "timeout"
+   * for other timeouts, or else the simple name of the exception class (for example a
+   * Thrift application exception). Wrapped exceptions are classified by their causes.
+   */
+  OutcomeClassifier DEFAULT = e -> {
+    if (e.isSuccess) {
+      return e.response instanceof HttpResponse
+          ? "http_" + ((HttpResponse) e.response).getStatusLine().getStatusCode()
+          : OK;
+    }
+    if (e.exception == null) {
+      return "unknown";
+    }
+    if (e.exception instanceof ValidationException) {
+      return VALIDATION;
+    }
+
+    for (Throwable t = e.exception; t != null; t = t.getCause() != t ? t.getCause() : null) {
+      if (t instanceof ConnectException || t instanceof ConnectTimeoutException
+          || t instanceof NoRouteToHostException || t instanceof UnknownHostException) {
+        return CONNECT;
+      }
+      if (t instanceof TimeoutException || t instanceof InterruptedIOException) {
+        return TIMEOUT;
+      }
+    }
+    return e.exception.getClass().getSimpleName();
+  };
+
+  String classify(TimingEvent<?> e);
+
+  /**
+   * @return whether requests with the given outcome failed: by default every outcome but "ok" and
+   * HTTP statuses below 500, so that exceptions, HTTP server errors and other outcomes such as
+   * Thrift application errors count as failures.
+   */
+  default boolean isFailure(final String outcome) {
+    if (OK.equals(outcome)) {
+      return false;
+    }
+    return !(outcome.length() == 8 && outcome.startsWith("http_")
+             && outcome.charAt(5) >= '1' && outcome.charAt(5) <= '4');
+  }
+}
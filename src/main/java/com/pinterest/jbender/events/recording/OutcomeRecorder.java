@@ -0,0 +1,84 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the outcome of each TimingEvent by class (see OutcomeClassifier) and records the durations
+ * of successful and failed requests, as told by their outcome, in separate HdrHistograms, so that
+ * fast failures do not skew the latency of successful requests. The counts can be read while recording.
+ */
+public class OutcomeRecorder implements Recorder {
+  private final OutcomeClassifier classifier;
+  private final long scale;
+  private final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+  // The durations of successful requests
+  public final Histogram successes;
+
+  // The durations of failed requests
+  public final Histogram failures;
+
+  /**
+   * @param classifier classifies the outcome of each event.
+   * @param successes the histogram into which durations of successful requests are written.
+   * @param failures the histogram into which durations of failed requests are written.
+   * @param scale the value by which to divide durations before recording them, as in
+   *              HdrHistogramRecorder.
+   */
+  public OutcomeRecorder(final OutcomeClassifier classifier,
+                         final Histogram successes,
+                         final Histogram failures,
+                         final long scale)
+  {
+    this.classifier = classifier;
+    this.successes = successes;
+    this.failures = failures;
+    this.scale = scale;
+  }
+
+  public OutcomeRecorder(final Histogram successes, final Histogram failures, final long scale) {
+    this(OutcomeClassifier.DEFAULT, successes, failures, scale);
+  }
+
+  @Override
+  public void record(final TimingEvent e) {
+    final String outcome = classifier.classify((TimingEvent<?>) e);
+    counts.computeIfAbsent(outcome, c -> new LongAdder()).increment();
+    (classifier.isFailure(outcome) ? failures : successes).recordValue(e.durationNanos / scale);
+  }
+
+  /**
+   * @return the number of events with the given outcome so far.
+   */
+  public long count(final String outcome) {
+    final LongAdder count = counts.get(outcome);
+    return count != null ? count.sum() : 0;
+  }
+
+  /**
+   * @return the number of events of each outcome so far, sorted by outcome.
+   */
+  public Map<String, Long> counts() {
+    final Map<String, Long> snapshot = new TreeMap<>();
+    counts.forEach((outcome, count) -> snapshot.put(outcome, count.sum()));
+    return snapshot;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Records the phase durations of each TimingEvent (see TimingEvent#phaseNanos) in one HdrHistogram
+ * per phase. Events without phase information and phases that were not observed are skipped.
+ */
+public class PhaseHistogramRecorder implements Recorder {
+  private final long scale;
+
+  // The phase names, as reported by the PhaseTimedRequestExecutor used in the load test
+  public final String[] phaseNames;
+
+  // The histograms used to record durations, indexed like phaseNames
+  public final Histogram[] histograms;
+
+  /**
+   * Constructor.
+   *
+   * @param phaseNames the names of the phases to record, usually obtained from
+   *                   PhaseTimedRequestExecutor#phaseNames.
+   * @param highestTrackableValue the highest value each histogram can record (after scaling).
+   * @param numberOfSignificantValueDigits the precision of each histogram.
+   * @param scale the value by which to divide each phase duration before recording it, see
+   *              HdrHistogramRecorder.
+   */
+  public PhaseHistogramRecorder(final String[] phaseNames,
+                                final long highestTrackableValue,
+                                final int numberOfSignificantValueDigits,
+                                final long scale)
+  {
+    this.phaseNames = phaseNames;
+    this.scale = scale;
+    this.histograms = new Histogram[phaseNames.length];
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new Histogram(highestTrackableValue, numberOfSignificantValueDigits);
+    }
+  }
+
+  /**
+   * The histogram for the phase with the given name, or null if there is no such phase.
+   */
+  public Histogram histogram(final String phaseName) {
+    for (int i = 0; i < phaseNames.length; i++) {
+      if (phaseNames[i].equals(phaseName)) {
+        return histograms[i];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void record(final TimingEvent e) {
+    final long[] phaseNanos = e.phaseNanos;
+    if (phaseNanos == null) {
+      return;
+    }
+
+    final int n = Math.min(phaseNanos.length, histograms.length);
+    for (int i = 0; i < n; i++) {
+      if (phaseNanos[i] >= 0) {
+        histograms[i].recordValue(phaseNanos[i] / scale);
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import co.paralleluniverse.strands.channels.ReceivePort;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.executors.ValidationException;
+import com.pinterest.jbender.executors.Validator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates responses between the event channel of a load test and its recorders, so that
+ * expensive checks (parsing, checksums) neither add to the measured latency nor use the CPU of the
+ * request fibers.
+ *
+ * Worker fibers take TimingEvents from the event channel, validate the responses of a sample of
+ * the successful ones and pass every event on through a bounded channel, to be recorded with
+ * Recorder#record. An event whose response fails validation is passed on as a failure with a
+ * ValidationException, which OutcomeClassifier#DEFAULT classifies as "validation".
+ *
+ * @param <T> the response type.
+ */
+public class ValidationStage<T> {
+  private final Validator<T> validator;
+  private final double sampleRate;
+  private final int workers;
+  private final int queueSize;
+  private final FiberScheduler scheduler;
+
+  private final AtomicLong successes = new AtomicLong();
+  private final AtomicLong validated = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  /**
+   * Validates a sample of responses in one fiber running in its own thread.
+   *
+   * @param validator throws an unchecked exception for an invalid response.
+   * @param sampleRate the fraction of successful responses to validate, 1 for all of them.
+   */
+  public ValidationStage(final Validator<T> validator, final double sampleRate) {
+    this(validator, sampleRate, 1, 1024, null);
+  }
+
+  /**
+   * @param validator throws an unchecked exception for an invalid response.
+   * @param sampleRate the fraction of successful responses to validate, 1 for all of them.
+   * @param workers the number of fibers validating responses.
+   * @param queueSize the capacity of the channel of validated events.
+   * @param scheduler the scheduler of the validating fibers; if {@code null}, they run in their own
+   *                  threads (one per worker), stopped once the event channel is closed.
+   */
+  public ValidationStage(final Validator<T> validator,
+                         final double sampleRate,
+                         final int workers,
+                         final int queueSize,
+                         final FiberScheduler scheduler)
+  {
+    this.validator = validator;
+    this.sampleRate = sampleRate;
+    this.workers = workers;
+    this.queueSize = queueSize;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Starts validating events, returning immediately.
+   *
+   * @param events the event channel of the load test.
+   * @return the channel of validated events, closed once the event channel is closed and drained.
+   */
+  public ReceivePort<TimingEvent<T>> validate(final ReceivePort<TimingEvent<T>> events) {
+    final Channel<TimingEvent<T>> validatedCh = Channels.newChannel(queueSize, Channels.OverflowPolicy.BLOCK, false, workers == 1);
+    final FiberForkJoinScheduler ownScheduler = scheduler == null ? new FiberForkJoinScheduler("jbender-validation", workers) : null;
+    final AtomicInteger running = new AtomicInteger(workers);
+
+    for (int i = 0; i < workers; i++) {
+      new Fiber<Void>("jbender-validator-" + i, ownScheduler != null ? ownScheduler : scheduler, () -> {
+        try {
+          TimingEvent<T> event;
+          while ((event = events.receive()) != null) {
+            validatedCh.send(sampled(event) ? check(event) : event);
+          }
+        } finally {
+          if (running.decrementAndGet() == 0) {
+            validatedCh.close();
+            if (ownScheduler != null) {
+              ownScheduler.getForkJoinPool().shutdown();
+            }
+          }
+        }
+      }).start();
+    }
+    return validatedCh;
+  }
+
+  /**
+   * @return the number of responses validated so far.
+   */
+  public long getValidated() {
+    return validated.get();
+  }
+
+  /**
+   * @return the number of responses that failed validation so far.
+   */
+  public long getFailed() {
+    return failed.get();
+  }
+
+  private boolean sampled(final TimingEvent<T> event) {
+    if (!event.isSuccess) {
+      return false;
+    }
+    // Validate evenly spread events rather than random ones, so that the sample size is exact
+    final long n = successes.incrementAndGet();
+    return (long) (n * sampleRate) > (long) ((n - 1) * sampleRate);
+  }
+
+  private TimingEvent<T> check(final TimingEvent<T> event) {
+    validated.incrementAndGet();
+    try {
+      validator.validate(event.response);
+      return event;
+    } catch (final RuntimeException | AssertionError e) {
+      failed.incrementAndGet();
+      return new TimingEvent<>(event.label, event.startNanos, event.waitNanos, event.durationNanos,
+                               event.overageNanos, event.response, new ValidationException(e), event.phaseNanos);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous request executor interface, for natively asynchronous clients.
+ *
+ * Unlike {@link RequestExecutor} no strand is needed (or blocked) for each request in flight.
+ *
+ * @param <Q> The request class.
+ * @param <S> The response class.
+ */
+@FunctionalInterface
+public interface AsyncRequestExecutor<Q, S> {
+  /**
+   * Starts executing a request; must not block.
+   *
+   * @param nanoTime The request execution start time.
+   * @param request  The request to be executed.
+   *
+   * @return A future completed with the response value, or exceptionally if the request fails.
+   */
+  CompletableFuture<S> execute(long nanoTime, Q request);
+}
@@ -0,0 +1,102 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors;
+
+import co.paralleluniverse.common.util.Exceptions;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.fibers.io.FiberSocketChannel;
+import com.pinterest.jbender.util.ConnectionPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends requests that are already serialized and framed (4-byte big-endian length followed by the
+ * message, as with Thrift's framed transport) over pooled fiber sockets, and returns the message of
+ * the response frame.
+ *
+ * Requests are written as is, through duplicates, so the same buffer (for example from a
+ * PayloadCache) can be sent by many fibers at once.
+ */
+public class FramedSocketRequestExecutor implements RequestExecutor<ByteBuffer, ByteBuffer>, AutoCloseable {
+  private final ConnectionPool<FiberSocketChannel> pool;
+  private final long timeoutMillis;
+
+  /**
+   * @param address the address of the server.
+   * @param maxConnections the maximum number of idle connections kept open.
+   * @param timeoutMillis the timeout of each socket read or write, 0 for none.
+   */
+  public FramedSocketRequestExecutor(final SocketAddress address, final int maxConnections, final long timeoutMillis) {
+    this.pool = new ConnectionPool<>(() -> FiberSocketChannel.open(address), maxConnections);
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  public FramedSocketRequestExecutor(final SocketAddress address, final int maxConnections) {
+    this(address, maxConnections, 0);
+  }
+
+  @Override
+  public ByteBuffer execute(final long nanoTime, final ByteBuffer request) throws SuspendExecution, InterruptedException {
+    FiberSocketChannel channel = null;
+    try {
+      channel = pool.acquire();
+      final ByteBuffer out = request.duplicate();
+      while (out.hasRemaining()) {
+        write(channel, out);
+      }
+
+      final ByteBuffer header = ByteBuffer.allocate(4);
+      readFully(channel, header);
+      final ByteBuffer response = ByteBuffer.allocate(header.getInt(0));
+      readFully(channel, response);
+      response.flip();
+
+      pool.release(channel);
+      return response;
+    } catch (final IOException | RuntimeException e) {
+      // The connection is in an unknown state after any failure, for example a corrupt frame length
+      try {
+        pool.releaseAfterError(channel);
+      } catch (final IOException closeException) {
+        e.addSuppressed(closeException);
+      }
+      throw Exceptions.rethrow(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    pool.close();
+  }
+
+  private void write(final FiberSocketChannel channel, final ByteBuffer buffer) throws IOException, SuspendExecution {
+    if (timeoutMillis > 0) {
+      channel.write(buffer, timeoutMillis, TimeUnit.MILLISECONDS);
+    } else {
+      channel.write(buffer);
+    }
+  }
+
+  private void readFully(final FiberSocketChannel channel, final ByteBuffer buffer) throws IOException, SuspendExecution {
+    while (buffer.hasRemaining()) {
+      final int read = timeoutMillis > 0 ? channel.read(buffer, timeoutMillis, TimeUnit.MILLISECONDS) : channel.read(buffer);
+      if (read < 0) {
+        throw new EOFException("Connection closed by the server");
+      }
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors;
+
+import co.paralleluniverse.common.util.Exceptions;
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.SuspendableCallable;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import co.paralleluniverse.strands.channels.SendPort;
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request executor decorator that hedges and retries requests made through another executor.
+ *
+ * Each logical request starts one attempt; if no response arrives within the hedge delay a backup
+ * attempt is started, and failed attempts are retried, up to {@code maxAttempts} in total. The
+ * first successful response wins and the remaining attempts are cancelled. Extra attempts (hedges
+ * and retries) are limited by a budget: each logical request earns {@code budgetRatio} extra
+ * attempts, and at most {@link #MAX_BUDGET} unused ones are kept.
+ *
+ * The hedge delay is either fixed or, when a percentile is given, the latency of successful
+ * attempts at that percentile over the last {@link #PERCENTILE_REFRESH_NANOS}.
+ *
+ * The load test measures logical requests, while a TimingEvent for every attempt (with
+ * {@code waitNanos} set to the attempt's start offset from the logical request) can be sent to a
+ * separate channel to measure the load added to the service.
+ *
+ * @param <Q> The request class.
+ * @param <S> The response class.
+ */
+public class HedgingRequestExecutor<Q, S> implements RequestExecutor<Q, S> {
+  public static final long MAX_BUDGET = 100;
+  public static final long PERCENTILE_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final long MIN_PERCENTILE_SAMPLES = 100;
+  private static final long MILLI_TOKENS = 1000;
+
+  private static final class Attempt<S> {
+    final boolean hedge;
+    final S response;
+    final Exception exception;
+
+    Attempt(final boolean hedge, final S response, final Exception exception) {
+      this.hedge = hedge;
+      this.response = response;
+      this.exception = exception;
+    }
+  }
+
+  private final RequestExecutor<Q, S> delegate;
+  private final long hedgeDelayNanos;
+  private final double hedgePercentile;
+  private final int maxAttempts;
+  private final long earnedMilliTokens;
+  private final SendPort<TimingEvent<S>> attemptChannel;
+  private final FiberScheduler fiberScheduler;
+
+  private final AtomicLong budgetMilliTokens = new AtomicLong(MAX_BUDGET * MILLI_TOKENS);
+  private final Recorder latencies = new Recorder(3);
+  private final AtomicLong nextRefreshNanos = new AtomicLong(System.nanoTime() + PERCENTILE_REFRESH_NANOS);
+  private Histogram intervalLatencies;
+  private volatile long percentileDelayNanos;
+
+  private final LongAdder attempts = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param delegate the executor performing each attempt.
+   * @param hedgeDelayNanos the delay after which a backup attempt is started, {@code <= 0} to
+   *                        disable hedging unless a percentile is given. With a percentile this is
+   *                        the delay used until enough latencies have been observed.
+   * @param hedgePercentile the percentile (0 to 100) of recent attempt latencies used as hedge
+   *                        delay, {@code <= 0} to always use {@code hedgeDelayNanos}.
+   * @param maxAttempts the maximum number of attempts (first attempt, hedges and retries) per
+   *                    logical request; 1 disables both hedging and retries.
+   * @param budgetRatio the number of extra attempts earned by each logical request, e.g. 0.1 to
+   *                    allow at most about 10% extra load on the service.
+   * @param attemptChannel an optional channel on which a TimingEvent is sent for every attempt.
+   * @param fiberScheduler an optional scheduler for the fibers performing attempts (the default
+   *                       one will be used if {@code null}).
+   */
+  public HedgingRequestExecutor(final RequestExecutor<Q, S> delegate,
+                                final long hedgeDelayNanos,
+                                final double hedgePercentile,
+                                final int maxAttempts,
+                                final double budgetRatio,
+                                final SendPort<TimingEvent<S>> attemptChannel,
+                                final FiberScheduler fiberScheduler)
+  {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+    }
+    this.delegate = delegate;
+    this.hedgeDelayNanos = hedgeDelayNanos;
+    this.hedgePercentile = hedgePercentile;
+    this.maxAttempts = maxAttempts;
+    this.earnedMilliTokens = (long) (budgetRatio * MILLI_TOKENS);
+    this.attemptChannel = attemptChannel;
+    this.fiberScheduler = fiberScheduler;
+    this.percentileDelayNanos = hedgeDelayNanos;
+  }
+
+  public HedgingRequestExecutor(final RequestExecutor<Q, S> delegate,
+                                final long hedgeDelayNanos,
+                                final int maxAttempts,
+                                final double budgetRatio,
+                                final SendPort<TimingEvent<S>> attemptChannel)
+  {
+    this(delegate, hedgeDelayNanos, 0, maxAttempts, budgetRatio, attemptChannel, null);
+  }
+
+  @Override
+  public S execute(final long nanoTime, final Q request) throws SuspendExecution, InterruptedException {
+    earnBudget();
+
+    final Channel<Attempt<S>> results = Channels.newChannel(maxAttempts, Channels.OverflowPolicy.BLOCK, false, true);
+    final List<Fiber<Void>> started = new ArrayList<>(maxAttempts);
+    try {
+      started.add(startAttempt(nanoTime, request, false, results));
+      int inFlight = 1;
+      long hedgeAtNanos = hedgeAt(nanoTime);
+      Exception lastException = null;
+
+      while (inFlight > 0) {
+        final Attempt<S> attempt;
+        if (hedgeAtNanos == Long.MAX_VALUE || started.size() >= maxAttempts) {
+          attempt = results.receive();
+        } else {
+          attempt = results.receive(Math.max(hedgeAtNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        }
+
+        if (attempt == null) {
+          // No response within the hedge delay
+          if (spendBudget()) {
+            hedges.increment();
+            started.add(startAttempt(nanoTime, request, true, results));
+            inFlight++;
+            hedgeAtNanos = hedgeAt(System.nanoTime());
+          } else {
+            hedgeAtNanos = Long.MAX_VALUE;
+          }
+          continue;
+        }
+
+        inFlight--;
+        if (attempt.exception == null) {
+          if (attempt.hedge) {
+            hedgeWins.increment();
+          }
+          return attempt.response;
+        }
+
+        lastException = attempt.exception;
+        if (started.size() < maxAttempts && spendBudget()) {
+          retries.increment();
+          started.add(startAttempt(nanoTime, request, false, results));
+          inFlight++;
+        }
+      }
+
+      throw Exceptions.rethrow(lastException);
+    } finally {
+      // Cancel the losers
+      for (final Fiber<Void> f : started) {
+        if (!f.isDone()) {
+          f.cancel(true);
+        }
+      }
+    }
+  }
+
+  /**
+   * The delay currently used before starting a backup attempt, or {@code Long.MAX_VALUE} if
+   * hedging is disabled.
+   */
+  public long hedgeDelayNanos() {
+    if (hedgePercentile > 0) {
+      refreshPercentileDelay();
+      return percentileDelayNanos > 0 ? percentileDelayNanos : Long.MAX_VALUE;
+    }
+    return hedgeDelayNanos > 0 ? hedgeDelayNanos : Long.MAX_VALUE;
+  }
+
+  // Total number of attempts started so far
+  public long attempts() {
+    return attempts.sum();
+  }
+
+  // Number of backup attempts started so far
+  public long hedges() {
+    return hedges.sum();
+  }
+
+  // Number of attempts started after a failure so far
+  public long retries() {
+    return retries.sum();
+  }
+
+  // Number of logical requests whose response came from a backup attempt
+  public long hedgeWins() {
+    return hedgeWins.sum();
+  }
+
+  private long hedgeAt(final long fromNanos) {
+    if (maxAttempts < 2) {
+      return Long.MAX_VALUE;
+    }
+    final long delay = hedgeDelayNanos();
+    return delay == Long.MAX_VALUE ? Long.MAX_VALUE : fromNanos + delay;
+  }
+
+  private void refreshPercentileDelay() {
+    final long now = System.nanoTime();
+    final long next = nextRefreshNanos.get();
+    // Only the caller winning the CAS reads the interval histogram
+    if (now >= next && nextRefreshNanos.compareAndSet(next, now + PERCENTILE_REFRESH_NANOS)) {
+      intervalLatencies = latencies.getIntervalHistogram(intervalLatencies);
+      if (intervalLatencies.getTotalCount() >= MIN_PERCENTILE_SAMPLES) {
+        percentileDelayNanos = intervalLatencies.getValueAtPercentile(hedgePercentile);
+      }
+    }
+  }
+
+  private void earnBudget() {
+    final long max = MAX_BUDGET * MILLI_TOKENS;
+    long cur;
+    do {
+      cur = budgetMilliTokens.get();
+    } while (cur < max && !budgetMilliTokens.compareAndSet(cur, Math.min(cur + earnedMilliTokens, max)));
+  }
+
+  private boolean spendBudget() {
+    long cur;
+    do {
+      cur = budgetMilliTokens.get();
+      if (cur < MILLI_TOKENS) {
+        return false;
+      }
+    } while (!budgetMilliTokens.compareAndSet(cur, cur - MILLI_TOKENS));
+    return true;
+  }
+
+  private Fiber<Void> startAttempt(final long logicalStartNanos,
+                                   final Q request,
+                                   final boolean hedge,
+                                   final SendPort<Attempt<S>> results)
+  {
+    attempts.increment();
+    final SuspendableCallable<Void> sc = () -> {
+      final long startNanos = System.nanoTime();
+      S response = null;
+      Exception exc = null;
+      try {
+        response = delegate.execute(startNanos, request);
+      } catch (final Exception ex) {
+        exc = ex;
+      }
+      final long durationNanos = System.nanoTime() - startNanos;
+
+      // A cancelled attempt still reports its outcome
+      Strand.interrupted();
+      if (exc == null) {
+        latencies.recordValue(durationNanos);
+      }
+      if (attemptChannel != null) {
+        final long offsetNanos = startNanos - logicalStartNanos;
+        if (exc == null) {
+          attemptChannel.send(new TimingEvent<>(offsetNanos, durationNanos, 0, response));
+        } else {
+          attemptChannel.send(new TimingEvent<>(offsetNanos, durationNanos, 0, exc));
+        }
+      }
+      results.send(new Attempt<>(hedge, response, exc));
+      return null;
+    };
+    return (fiberScheduler != null ? new Fiber<>(fiberScheduler, sc) : new Fiber<>(sc)).start();
+  }
+}
@@ -0,0 +1,48 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+
+/**
+ * Request executor that also breaks down the time spent on each request into phases (for example
+ * connection pool wait, connect or time to first byte).
+ *
+ * @param <Q> The request class.
+ * @param <S> The response class.
+ */
+public interface PhaseTimedRequestExecutor<Q, S> extends RequestExecutor<Q, S> {
+  /**
+   * The names of the phases reported by this executor, in the order used to index the
+   * {@code phaseNanos} array. Must always return the same array.
+   */
+  String[] phaseNames();
+
+  /**
+   * The suspendable request execution logic, recording phase durations.
+   *
+   * @param nanoTime   The request execution start time.
+   * @param request    The request to be executed.
+   * @param phaseNanos An array sized as {@link #phaseNames()} in which the duration of each phase
+   *                   is written, in nanoseconds; phases that were not observed are set to -1.
+   *                   The array is also filled when the request fails.
+   *
+   * @return The response value.
+   */
+  S execute(long nanoTime, Q request, long[] phaseNanos) throws SuspendExecution, InterruptedException;
+
+  @Override
+  default S execute(long nanoTime, Q request) throws SuspendExecution, InterruptedException {
+    return execute(nanoTime, request, new long[phaseNames().length]);
+  }
+}
@@ -0,0 +1,25 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors;
+
+/**
+ * Signals that a response was received but failed validation, so that it is counted apart from
+ * transport and service errors.
+ */
+public class ValidationException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public ValidationException(final Throwable cause) {
+    super(cause.toString(), cause);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+
+/**
+ * Request executor that is told whether each request is a warmup one, whose TimingEvent the load
+ * test does not report, for example to leave out events of its own for warmup requests too.
+ *
+ * @param <Q> The request class.
+ * @param <S> The response class.
+ */
+public interface WarmupAwareRequestExecutor<Q, S> extends RequestExecutor<Q, S> {
+  /**
+   * The suspendable request execution logic.
+   *
+   * @param nanoTime The request execution start time.
+   * @param request  The request to be executed.
+   * @param warmup   Whether the request is a warmup one.
+   *
+   * @return The response value.
+   */
+  S execute(long nanoTime, Q request, boolean warmup) throws SuspendExecution, InterruptedException;
+
+  @Override
+  default S execute(long nanoTime, Q request) throws SuspendExecution, InterruptedException {
+    return execute(nanoTime, request, false);
+  }
+}
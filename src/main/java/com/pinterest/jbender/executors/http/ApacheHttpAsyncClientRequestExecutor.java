@@ -0,0 +1,84 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.http;
+
+import com.pinterest.jbender.executors.AsyncRequestExecutor;
+import com.pinterest.jbender.executors.Validator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous HTTP request executor completing futures straight from the Apache async HTTP
+ * client callbacks, without any fiber per request (see JBender#loadTestThroughputAsync).
+ *
+ * The validator, if any, runs in the I/O thread completing the request; expensive validation is
+ * better left to a ValidationStage on the event channel.
+ */
+public class ApacheHttpAsyncClientRequestExecutor<X extends HttpRequestBase> implements AsyncRequestExecutor<X, HttpResponse>, AutoCloseable {
+  private final Validator<HttpResponse> validator;
+  private final PhaseTimingHttpAsyncClient client;
+
+  public ApacheHttpAsyncClientRequestExecutor(final Validator<HttpResponse> resValidator, final int maxConnections, final int timeout, final int parallelism) throws IOReactorException {
+    client = FiberApacheHttpClientRequestExecutor.newAsyncClient(maxConnections, timeout, parallelism);
+    client.start();
+    validator = resValidator;
+  }
+
+  public ApacheHttpAsyncClientRequestExecutor(final Validator<HttpResponse> resValidator, final int maxConnections, final int timeout) throws IOReactorException {
+    this(resValidator, maxConnections, timeout, Runtime.getRuntime().availableProcessors());
+  }
+
+  public ApacheHttpAsyncClientRequestExecutor(final int maxConnections) throws IOReactorException {
+    this(null, maxConnections, 0);
+  }
+
+  @Override
+  public CompletableFuture<HttpResponse> execute(final long nanoTime, final X request) {
+    final CompletableFuture<HttpResponse> ret = new CompletableFuture<>();
+    client.execute(request, null, new FutureCallback<HttpResponse>() {
+      @Override
+      public void completed(final HttpResponse response) {
+        try {
+          if (validator != null) {
+            validator.validate(response);
+          }
+          ret.complete(response);
+        } catch (final RuntimeException e) {
+          ret.completeExceptionally(e);
+        }
+      }
+
+      @Override
+      public void failed(final Exception e) {
+        ret.completeExceptionally(e);
+      }
+
+      @Override
+      public void cancelled() {
+        ret.completeExceptionally(new CancellationException());
+      }
+    });
+    return ret;
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+}
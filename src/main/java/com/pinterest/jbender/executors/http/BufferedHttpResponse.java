@@ -0,0 +1,38 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+
+/**
+ * A response fully received by the async client, exposed as a {@link CloseableHttpResponse};
+ * closing it consumes its (in-memory) entity.
+ */
+class BufferedHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
+  BufferedHttpResponse(final HttpResponse response) {
+    super(response.getStatusLine());
+    setHeaders(response.getAllHeaders());
+    setEntity(response.getEntity());
+    setLocale(response.getLocale());
+  }
+
+  @Override
+  public void close() throws IOException {
+    EntityUtils.consume(getEntity());
+  }
+}
@@ -13,42 +13,79 @@ limitations under the License.
 package com.pinterest.jbender.executors.http;
 
 import co.paralleluniverse.common.util.Exceptions;
-import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberAsync;
 import co.paralleluniverse.fibers.SuspendExecution;
-import co.paralleluniverse.fibers.httpclient.FiberHttpClient;
-import co.paralleluniverse.strands.SuspendableCallable;
-import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.executors.PhaseTimedRequestExecutor;
 import com.pinterest.jbender.executors.Validator;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
 import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
 import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpCoreContext;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
 
 /**
  * Executor base class offering a Comsat-based implementation of an HTTP request executor.
+ *
+ * Each request is broken down into the {@link HttpPhases}. The validator, if any, runs in the
+ * request fiber and its time counts in the request latency; expensive validation is better left to
+ * a ValidationStage on the event channel.
  */
-public class FiberApacheHttpClientRequestExecutor<X extends HttpRequestBase> implements RequestExecutor<X, CloseableHttpResponse>, AutoCloseable {
+public class FiberApacheHttpClientRequestExecutor<X extends HttpRequestBase> implements PhaseTimedRequestExecutor<X, CloseableHttpResponse>, AutoCloseable {
   // Inspired by https://github.com/puniverse/photon/blob/master/src/main/java/co/paralleluniverse/photon/Photon.java
 
   private final Validator<CloseableHttpResponse> validator;
-  private final FiberHttpClient client;
+  private final PhaseTimingHttpAsyncClient client;
 
   public FiberApacheHttpClientRequestExecutor(final Validator<CloseableHttpResponse> resValidator, final int maxConnections, final int timeout, final int parallelism) throws IOReactorException {
+    client = newAsyncClient(maxConnections, timeout, parallelism);
+    client.start();
+    validator = resValidator;
+  }
+
+  public FiberApacheHttpClientRequestExecutor(final Validator<CloseableHttpResponse> resValidator, final int maxConnections, final int timeout) throws IOReactorException {
+    this(resValidator, maxConnections, timeout, Runtime.getRuntime().availableProcessors());
+  }
+
+  public FiberApacheHttpClientRequestExecutor(final Validator<CloseableHttpResponse> resValidator, final int maxConnections) throws IOReactorException {
+    this(resValidator, maxConnections, 0);
+  }
+
+  public FiberApacheHttpClientRequestExecutor(final int maxConnections) throws IOReactorException {
+    this(null, maxConnections, 0);
+  }
+
+  /**
+   * Builds the (not yet started) pooling async client used by the HTTP executors, instrumented to
+   * record {@link HttpPhases} for requests executed with a {@link PhaseTimingContext}.
+   */
+  static PhaseTimingHttpAsyncClient newAsyncClient(final int maxConnections, final int timeout, final int parallelism) throws IOReactorException {
     final DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(IOReactorConfig.custom().
       setConnectTimeout(timeout).
       setIoThreadCount(parallelism).
       setSoTimeout(timeout).
       build());
 
-    final PoolingNHttpClientConnectionManager mngr = new PoolingNHttpClientConnectionManager(ioreactor);
+    final PoolingNHttpClientConnectionManager mngr = new PoolingNHttpClientConnectionManager(
+      new PhaseTimingIOReactor(ioreactor),
+      RegistryBuilder.<SchemeIOSessionStrategy>create().
+        register("http", NoopIOSessionStrategy.INSTANCE).
+        register("https", new PhaseTimingSSLIOSessionStrategy()).
+        build());
     mngr.setDefaultMaxPerRoute(maxConnections);
     mngr.setMaxTotal(maxConnections);
 
@@ -56,38 +93,38 @@ public class FiberApacheHttpClientRequestExecutor<X extends HttpRequestBase> imp
       setConnectionManager(mngr).
       setDefaultRequestConfig(RequestConfig.custom().setLocalAddress(null).build()).build();
 
-    client = new FiberHttpClient(ahc);
-    validator = resValidator;
+    return new PhaseTimingHttpAsyncClient(ahc);
   }
 
-  public FiberApacheHttpClientRequestExecutor(final Validator<CloseableHttpResponse> resValidator, final int maxConnections, final int timeout) throws IOReactorException {
-    this(resValidator, maxConnections, timeout, Runtime.getRuntime().availableProcessors());
-  }
+  // TODO Figure out meaningful and sensible default for maxConnections and add no-args constructor
 
-  public FiberApacheHttpClientRequestExecutor(final Validator<CloseableHttpResponse> resValidator, final int maxConnections) throws IOReactorException {
-    this(resValidator, maxConnections, 0);
+  @Override
+  public String[] phaseNames() {
+    return HttpPhases.NAMES;
   }
 
-  public FiberApacheHttpClientRequestExecutor(final int maxConnections) throws IOReactorException {
-    this(null, maxConnections, 0);
+  @Override
+  public CloseableHttpResponse execute(final long nanoTime, final HttpRequestBase request) throws SuspendExecution, InterruptedException {
+    return execute(nanoTime, request, new long[HttpPhases.NAMES.length]);
   }
 
-  // TODO Figure out meaningful and sensible default for maxConnections and add no-args constructor
-
   @Override
-  public CloseableHttpResponse execute(final long nanoTime, final HttpRequestBase request) throws SuspendExecution, InterruptedException {
+  public CloseableHttpResponse execute(final long nanoTime, final HttpRequestBase request, final long[] phaseNanos) throws SuspendExecution, InterruptedException {
     // TODO See if timeout can be configured per-request
+    final PhaseTimingContext context = new PhaseTimingContext(nanoTime);
+    final ResponseAsync async = new ResponseAsync(client, request, context);
     final CloseableHttpResponse ret;
     try {
-      ret = new Fiber<>((SuspendableCallable<CloseableHttpResponse>) () -> {
-        try {
-          return client.execute(request);
-        } catch (final IOException e) {
-          throw Exceptions.rethrowUnwrap(e);
-        }
-      }).start().get();
-    } catch (final ExecutionException e) {
+      ret = new BufferedHttpResponse(async.run());
+    } catch (final InterruptedException e) {
+      // The fiber was cancelled, for example as the loser of a hedged request: abort the exchange so
+      // that it frees its connection instead of running to completion
+      async.cancel();
+      throw e;
+    } catch (final IOException e) {
       throw Exceptions.rethrowUnwrap(e);
+    } finally {
+      context.fill(phaseNanos);
     }
     if (validator != null) {
       validator.validate(ret);
@@ -99,4 +136,61 @@ public class FiberApacheHttpClientRequestExecutor<X extends HttpRequestBase> imp
   public void close() throws IOException {
     client.close();
   }
+
+  /**
+   * Suspends the calling fiber until the async client completes a request.
+   */
+  private static final class ResponseAsync extends FiberAsync<HttpResponse, IOException> {
+    private static final long serialVersionUID = 1L;
+
+    private final PhaseTimingHttpAsyncClient client;
+    private final HttpRequestBase request;
+    private final PhaseTimingContext context;
+    private transient volatile Future<HttpResponse> future;
+
+    ResponseAsync(final PhaseTimingHttpAsyncClient client, final HttpRequestBase request, final PhaseTimingContext context) {
+      this.client = client;
+      this.request = request;
+      this.context = context;
+    }
+
+    @Override
+    protected void requestAsync() {
+      future = client.execute(request, context, new FutureCallback<HttpResponse>() {
+        @Override
+        public void completed(final HttpResponse response) {
+          asyncCompleted(response);
+        }
+
+        @Override
+        public void failed(final Exception e) {
+          asyncFailed(e);
+        }
+
+        @Override
+        public void cancelled() {
+          asyncFailed(new CancellationException());
+        }
+      });
+    }
+
+    /**
+     * Cancels the request and shuts its connection down if it has one, so that the connection is
+     * released to the pool rather than kept until the response arrives.
+     */
+    void cancel() {
+      final Future<HttpResponse> f = future;
+      if (f != null) {
+        f.cancel(true);
+      }
+      final Object connection = context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+      if (connection instanceof HttpConnection) {
+        try {
+          ((HttpConnection) connection).shutdown();
+        } catch (final IOException e) {
+          // The connection is discarded anyway
+        }
+      }
+    }
+  }
 }
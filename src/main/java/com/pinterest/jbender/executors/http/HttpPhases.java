@@ -0,0 +1,45 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.http;
+
+/**
+ * Indexes of the phases reported by {@link FiberApacheHttpClientRequestExecutor} in
+ * {@link com.pinterest.jbender.events.TimingEvent#phaseNanos}.
+ *
+ * A request on a pooled connection spends no time connecting or handshaking, so those phases are
+ * reported as 0; phases that were never reached (for example because the connection failed) are
+ * reported as -1.
+ */
+public final class HttpPhases {
+  // Waiting for a pooled connection, or for a new connection to be initiated.
+  public static final int POOL = 0;
+
+  // TCP connect of a new connection.
+  public static final int CONNECT = 1;
+
+  // TLS handshake of a new connection.
+  public static final int HANDSHAKE = 2;
+
+  // Writing the request once the connection is ready.
+  public static final int WRITE = 3;
+
+  // From the request being written to the response head being received (server think time).
+  public static final int FIRST_BYTE = 4;
+
+  // From the response head to the last byte of the response body.
+  public static final int TRANSFER = 5;
+
+  static final String[] NAMES = {"pool", "connect", "handshake", "write", "firstByte", "transfer"};
+
+  private HttpPhases() {}
+}
@@ -0,0 +1,91 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.http;
+
+import org.apache.http.nio.conn.ManagedNHttpClientConnection;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import java.util.Arrays;
+
+/**
+ * Per-request HTTP context collecting the timestamps needed to compute {@link HttpPhases}.
+ *
+ * Connection-level timestamps (connect and handshake) are kept as attributes of the underlying
+ * {@link IOSession}, as they are recorded before the connection is bound to any request.
+ */
+class PhaseTimingContext extends BasicHttpContext {
+  static final String CONNECT_START = "jbender.connect.start";
+  static final String CONNECT_END = "jbender.connect.end";
+  static final String HANDSHAKE_END = "jbender.handshake.end";
+
+  private final long startNanos;
+  private IOSession session;
+  private long routedNanos;
+  long writtenNanos;
+  long firstByteNanos;
+  long lastByteNanos;
+
+  PhaseTimingContext(final long startNanos) {
+    this.startNanos = startNanos;
+  }
+
+  @Override
+  public void setAttribute(final String id, final Object obj) {
+    super.setAttribute(id, obj);
+    // The client binds the leased (and routed) connection right before generating the request
+    if (routedNanos == 0 && HttpCoreContext.HTTP_CONNECTION.equals(id) && obj instanceof ManagedNHttpClientConnection) {
+      routedNanos = System.nanoTime();
+      session = ((ManagedNHttpClientConnection) obj).getIOSession();
+    }
+  }
+
+  void fill(final long[] phaseNanos) {
+    Arrays.fill(phaseNanos, -1);
+    if (routedNanos == 0) {
+      return;
+    }
+
+    long readyNanos = routedNanos;
+    final long connectStart = sessionNanos(CONNECT_START);
+    if (connectStart >= startNanos) {
+      // The connection was opened for this request
+      final long connectEnd = sessionNanos(CONNECT_END);
+      final long handshakeEnd = sessionNanos(HANDSHAKE_END);
+      phaseNanos[HttpPhases.POOL] = connectStart - startNanos;
+      phaseNanos[HttpPhases.CONNECT] = connectEnd - connectStart;
+      phaseNanos[HttpPhases.HANDSHAKE] = handshakeEnd >= connectEnd ? handshakeEnd - connectEnd : 0;
+      readyNanos = Math.max(readyNanos, handshakeEnd);
+    } else {
+      phaseNanos[HttpPhases.POOL] = routedNanos - startNanos;
+      phaseNanos[HttpPhases.CONNECT] = 0;
+      phaseNanos[HttpPhases.HANDSHAKE] = 0;
+    }
+
+    if (writtenNanos != 0) {
+      phaseNanos[HttpPhases.WRITE] = Math.max(writtenNanos - readyNanos, 0);
+      if (firstByteNanos != 0) {
+        phaseNanos[HttpPhases.FIRST_BYTE] = Math.max(firstByteNanos - writtenNanos, 0);
+        if (lastByteNanos != 0) {
+          phaseNanos[HttpPhases.TRANSFER] = lastByteNanos - firstByteNanos;
+        }
+      }
+    }
+  }
+
+  private long sessionNanos(final String attribute) {
+    final Object v = session != null ? session.getAttribute(attribute) : null;
+    return v != null ? (Long) v : 0;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.http;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+/**
+ * Async HTTP client wrapper recording request written, first byte and last byte times in a
+ * {@link PhaseTimingContext}, if one is used for the request, through the request producer and
+ * response consumer it passes to the underlying client.
+ */
+class PhaseTimingHttpAsyncClient implements Closeable {
+  private final CloseableHttpAsyncClient client;
+
+  PhaseTimingHttpAsyncClient(final CloseableHttpAsyncClient client) {
+    this.client = client;
+  }
+
+  void start() {
+    client.start();
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+
+  /**
+   * Executes a request, buffering its response in memory.
+   *
+   * @param context the context of the request, possibly a {@link PhaseTimingContext}, or
+   *                {@code null}.
+   */
+  Future<HttpResponse> execute(final HttpUriRequest request,
+                               final HttpContext context,
+                               final FutureCallback<HttpResponse> callback)
+  {
+    final HttpAsyncRequestProducer producer = HttpAsyncMethods.create(request);
+    final HttpAsyncResponseConsumer<HttpResponse> consumer = HttpAsyncMethods.createConsumer();
+    if (context instanceof PhaseTimingContext) {
+      final PhaseTimingContext timing = (PhaseTimingContext) context;
+      return client.execute(new TimedProducer(producer, timing), new TimedConsumer<>(consumer, timing), context, callback);
+    }
+    return client.execute(producer, consumer, context, callback);
+  }
+
+  private static final class TimedProducer implements HttpAsyncRequestProducer {
+    private final HttpAsyncRequestProducer delegate;
+    private final PhaseTimingContext timing;
+
+    TimedProducer(final HttpAsyncRequestProducer delegate, final PhaseTimingContext timing) {
+      this.delegate = delegate;
+      this.timing = timing;
+    }
+
+    @Override
+    public HttpHost getTarget() {
+      return delegate.getTarget();
+    }
+
+    @Override
+    public HttpRequest generateRequest() throws IOException, HttpException {
+      return delegate.generateRequest();
+    }
+
+    @Override
+    public void produceContent(final ContentEncoder encoder, final IOControl ioctrl) throws IOException {
+      delegate.produceContent(encoder, ioctrl);
+    }
+
+    @Override
+    public void requestCompleted(final HttpContext context) {
+      timing.writtenNanos = System.nanoTime();
+      delegate.requestCompleted(context);
+    }
+
+    @Override
+    public void failed(final Exception ex) {
+      delegate.failed(ex);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return delegate.isRepeatable();
+    }
+
+    @Override
+    public void resetRequest() throws IOException {
+      delegate.resetRequest();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+
+  private static final class TimedConsumer<T> implements HttpAsyncResponseConsumer<T> {
+    private final HttpAsyncResponseConsumer<T> delegate;
+    private final PhaseTimingContext timing;
+
+    TimedConsumer(final HttpAsyncResponseConsumer<T> delegate, final PhaseTimingContext timing) {
+      this.delegate = delegate;
+      this.timing = timing;
+    }
+
+    @Override
+    public void responseReceived(final HttpResponse response) throws IOException, HttpException {
+      timing.firstByteNanos = System.nanoTime();
+      delegate.responseReceived(response);
+    }
+
+    @Override
+    public void consumeContent(final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+      delegate.consumeContent(decoder, ioctrl);
+    }
+
+    @Override
+    public void responseCompleted(final HttpContext context) {
+      timing.lastByteNanos = System.nanoTime();
+      delegate.responseCompleted(context);
+    }
+
+    @Override
+    public void failed(final Exception ex) {
+      delegate.failed(ex);
+    }
+
+    @Override
+    public Exception getException() {
+      return delegate.getException();
+    }
+
+    @Override
+    public T getResult() {
+      return delegate.getResult();
+    }
+
+    @Override
+    public boolean isDone() {
+      return delegate.isDone();
+    }
+
+    @Override
+    public boolean cancel() {
+      return delegate.cancel();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
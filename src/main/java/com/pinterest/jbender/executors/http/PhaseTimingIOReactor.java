@@ -0,0 +1,92 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.http;
+
+import org.apache.http.nio.reactor.*;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+
+/**
+ * Connecting I/O reactor recording connect start and end times as attributes of new sessions.
+ */
+class PhaseTimingIOReactor implements ConnectingIOReactor {
+  private final ConnectingIOReactor delegate;
+
+  PhaseTimingIOReactor(final ConnectingIOReactor delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public SessionRequest connect(final SocketAddress remoteAddress,
+                                final SocketAddress localAddress,
+                                final Object attachment,
+                                final SessionRequestCallback callback)
+  {
+    final long connectStart = System.nanoTime();
+    return delegate.connect(remoteAddress, localAddress, attachment, new SessionRequestCallback() {
+      @Override
+      public void completed(final SessionRequest request) {
+        final IOSession session = request.getSession();
+        if (session != null) {
+          session.setAttribute(PhaseTimingContext.CONNECT_START, connectStart);
+          session.setAttribute(PhaseTimingContext.CONNECT_END, System.nanoTime());
+        }
+        if (callback != null) {
+          callback.completed(request);
+        }
+      }
+
+      @Override
+      public void failed(final SessionRequest request) {
+        if (callback != null) {
+          callback.failed(request);
+        }
+      }
+
+      @Override
+      public void timeout(final SessionRequest request) {
+        if (callback != null) {
+          callback.timeout(request);
+        }
+      }
+
+      @Override
+      public void cancelled(final SessionRequest request) {
+        if (callback != null) {
+          callback.cancelled(request);
+        }
+      }
+    });
+  }
+
+  @Override
+  public IOReactorStatus getStatus() {
+    return delegate.getStatus();
+  }
+
+  @Override
+  public void execute(final IOEventDispatch eventDispatch) throws IOException {
+    delegate.execute(eventDispatch);
+  }
+
+  @Override
+  public void shutdown(final long waitMs) throws IOException {
+    delegate.shutdown(waitMs);
+  }
+
+  @Override
+  public void shutdown() throws IOException {
+    delegate.shutdown();
+  }
+}
@@ -0,0 +1,36 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Default TLS session strategy that also records the handshake completion time on the session.
+ */
+class PhaseTimingSSLIOSessionStrategy extends SSLIOSessionStrategy {
+  PhaseTimingSSLIOSessionStrategy() {
+    super(SSLContexts.createDefault(), getDefaultHostnameVerifier());
+  }
+
+  @Override
+  protected void verifySession(final HttpHost host, final IOSession iosession, final SSLSession sslsession) throws SSLException {
+    iosession.setAttribute(PhaseTimingContext.HANDSHAKE_END, System.nanoTime());
+    super.verifySession(host, iosession, sslsession);
+  }
+}
@@ -0,0 +1,33 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.scenario;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+
+/**
+ * A user flow made of several steps, for example login, fetch the feed and then fetch some pins.
+ *
+ * @param <Q> The class of the value starting each session (e.g. the user credentials).
+ */
+@FunctionalInterface
+public interface Scenario<Q> {
+  /**
+   * The suspendable session logic; each step should be executed through
+   * {@link Session#step(String, com.pinterest.jbender.executors.RequestExecutor, Object)}, passing
+   * data between steps as needed. Throwing aborts the session, which is then reported as failed.
+   *
+   * @param seed    The value starting this session.
+   * @param session The session, used to execute and time steps.
+   */
+  void run(Q seed, Session session) throws SuspendExecution, InterruptedException;
+}
@@ -0,0 +1,50 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.scenario;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.channels.SendPort;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.executors.WarmupAwareRequestExecutor;
+
+/**
+ * Request executor running a whole {@link Scenario} session for each request, so that each
+ * arrival in a load test starts a user session in its own fiber.
+ *
+ * The load test times whole sessions, while a labeled TimingEvent for each step is sent on the
+ * step channel (which can be recorded per label with a LabeledHdrHistogramRecorder). Like the
+ * session events, step events are not sent for warmup sessions.
+ *
+ * @param <Q> The class of the value starting each session.
+ */
+public class ScenarioRequestExecutor<Q> implements WarmupAwareRequestExecutor<Q, Void> {
+  private final Scenario<Q> scenario;
+  private final SendPort<TimingEvent<Object>> stepChannel;
+
+  /**
+   * Constructor.
+   *
+   * @param scenario the scenario run by each session.
+   * @param stepChannel an optional channel on which a TimingEvent is sent for every step.
+   */
+  public ScenarioRequestExecutor(final Scenario<Q> scenario, final SendPort<TimingEvent<Object>> stepChannel) {
+    this.scenario = scenario;
+    this.stepChannel = stepChannel;
+  }
+
+  @Override
+  public Void execute(final long nanoTime, final Q seed, final boolean warmup) throws SuspendExecution, InterruptedException {
+    scenario.run(seed, new Session(nanoTime, warmup ? null : stepChannel));
+    return null;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.scenario;
+
+import co.paralleluniverse.common.util.Exceptions;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.channels.SendPort;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.executors.RequestExecutor;
+
+/**
+ * A single run of a {@link Scenario}, timing each of its steps.
+ */
+public final class Session {
+  private final long startNanos;
+  private final SendPort<TimingEvent<Object>> stepChannel;
+  private int steps;
+
+  Session(final long startNanos, final SendPort<TimingEvent<Object>> stepChannel) {
+    this.startNanos = startNanos;
+    this.stepChannel = stepChannel;
+  }
+
+  /**
+   * Executes and times a step, sending a TimingEvent labeled with the step name whether the step
+   * succeeds or not. The event's {@code waitNanos} is the offset of the step from the start of the
+   * session.
+   *
+   * @param label    The step name.
+   * @param executor The executor performing the step.
+   * @param request  The step request.
+   *
+   * @return The step response.
+   * @throws RuntimeException (or InterruptedException) if the step fails, aborting the session
+   *         unless caught by the scenario.
+   */
+  public <Q, S> S step(final String label, final RequestExecutor<Q, S> executor, final Q request)
+      throws SuspendExecution, InterruptedException
+  {
+    steps++;
+    final long stepStartNanos = System.nanoTime();
+    S response = null;
+    Exception exc = null;
+    try {
+      response = executor.execute(stepStartNanos, request);
+    } catch (final Exception ex) {
+      exc = ex;
+    }
+    final long durationNanos = System.nanoTime() - stepStartNanos;
+
+    if (stepChannel != null) {
+      stepChannel.send(new TimingEvent<>(
+        label, stepStartNanos - startNanos, durationNanos, 0, response, exc, null));
+    }
+
+    if (exc instanceof InterruptedException) {
+      throw (InterruptedException) exc;
+    } else if (exc != null) {
+      throw Exceptions.rethrow(exc);
+    }
+    return response;
+  }
+
+  // The number of steps started so far in this session
+  public int steps() {
+    return steps;
+  }
+
+  // The time elapsed since the start of this session
+  public long elapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+}
@@ -23,4 +23,9 @@ public class ConstantIntervalGenerator implements IntervalGenerator {
   public long nextInterval(long nanoTimeSinceStart) {
     return interval;
   }
+
+  @Override
+  public double getRate() {
+    return interval > 0 ? 1000000000.0 / interval : Double.NaN;
+  }
 }
@@ -22,6 +22,10 @@ public class ExponentialIntervalGenerator implements IntervalGenerator {
   private final Random rand;
 
   public ExponentialIntervalGenerator(int queriesPerSecond) {
+    this((double) queriesPerSecond);
+  }
+
+  public ExponentialIntervalGenerator(double queriesPerSecond) {
     nanosPerQuery = 1000000000.0 / queriesPerSecond;
     this.rand = new Random();
   }
@@ -30,4 +34,9 @@ public class ExponentialIntervalGenerator implements IntervalGenerator {
   public long nextInterval(long nanoTimeSinceStart) {
     return (long) (-Math.log(rand.nextDouble()) * this.nanosPerQuery);
   }
+
+  @Override
+  public double getRate() {
+    return 1000000000.0 / nanosPerQuery;
+  }
 }
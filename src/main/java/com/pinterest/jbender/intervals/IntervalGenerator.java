@@ -18,4 +18,11 @@ package com.pinterest.jbender.intervals;
 @FunctionalInterface
 public interface IntervalGenerator {
   long nextInterval(long nanoTimeSinceStart);
+
+  /**
+   * @return the mean rate of the generated intervals in requests per second, NaN if unknown.
+   */
+  default double getRate() {
+    return Double.NaN;
+  }
 }
@@ -0,0 +1,358 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import co.paralleluniverse.fibers.DefaultFiberScheduler;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.strands.channels.QueueChannel;
+import co.paralleluniverse.strands.channels.ReceivePort;
+import com.pinterest.jbender.LoadControl;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import org.HdrHistogram.Histogram;
+
+import java.io.Closeable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the health of the load generator itself while a load test runs, so that a run limited
+ * by the generator rather than by the service can be told apart.
+ *
+ * As a Recorder it records the schedule lag of each request (its overage, i.e. how late it was
+ * dispatched); in the background it samples the queue depth of the fiber scheduler, the backlog of
+ * the event channel and the resulting recorder lag, the CPU time of the carrier threads and the
+ * time spent in GC pauses. The final report marks the run as generator-bound when any of these
+ * exceeds its threshold, or when the dispatched rate falls short of the target rate.
+ */
+public class GeneratorDiagnostics implements Recorder, Closeable {
+  /**
+   * Limits beyond which a run is considered generator-bound.
+   */
+  public static final class Thresholds {
+    public static final Thresholds DEFAULT = new Thresholds(TimeUnit.MILLISECONDS.toNanos(10), 1000, 10000,
+                                                            TimeUnit.MILLISECONDS.toNanos(100), 0.9, 0.05, 0.95);
+
+    // The 99th percentile of schedule lag
+    public final long maxScheduleLagNanos;
+    public final int maxSchedulerQueue;
+    public final int maxEventBacklog;
+    public final long maxRecorderLagNanos;
+
+    // The fraction of the carrier threads' capacity used
+    public final double maxCarrierCpu;
+
+    // The fraction of the run spent in GC pauses
+    public final double maxGcFraction;
+
+    // The minimal ratio of the dispatched rate to the target rate
+    public final double minRateRatio;
+
+    public Thresholds(final long maxScheduleLagNanos,
+                      final int maxSchedulerQueue,
+                      final int maxEventBacklog,
+                      final long maxRecorderLagNanos,
+                      final double maxCarrierCpu,
+                      final double maxGcFraction,
+                      final double minRateRatio)
+    {
+      this.maxScheduleLagNanos = maxScheduleLagNanos;
+      this.maxSchedulerQueue = maxSchedulerQueue;
+      this.maxEventBacklog = maxEventBacklog;
+      this.maxRecorderLagNanos = maxRecorderLagNanos;
+      this.maxCarrierCpu = maxCarrierCpu;
+      this.maxGcFraction = maxGcFraction;
+      this.minRateRatio = minRateRatio;
+    }
+  }
+
+  /**
+   * The diagnostics of a run.
+   */
+  public static final class Report {
+    public final long durationNanos;
+    public final long scheduleLagP99Nanos;
+    public final long scheduleLagMaxNanos;
+    public final int maxSchedulerQueue;
+    public final int maxEventBacklog;
+    public final long maxRecorderLagNanos;
+    public final double carrierCpu;
+    public final long gcPauseNanos;
+
+    // NaN if unknown
+    public final double targetRate;
+    public final double dispatchedRate;
+
+    // The reasons why the run is generator-bound, empty if it is not
+    public final List<String> reasons;
+
+    Report(final long durationNanos,
+           final long scheduleLagP99Nanos,
+           final long scheduleLagMaxNanos,
+           final int maxSchedulerQueue,
+           final int maxEventBacklog,
+           final long maxRecorderLagNanos,
+           final double carrierCpu,
+           final long gcPauseNanos,
+           final double targetRate,
+           final double dispatchedRate,
+           final List<String> reasons)
+    {
+      this.durationNanos = durationNanos;
+      this.scheduleLagP99Nanos = scheduleLagP99Nanos;
+      this.scheduleLagMaxNanos = scheduleLagMaxNanos;
+      this.maxSchedulerQueue = maxSchedulerQueue;
+      this.maxEventBacklog = maxEventBacklog;
+      this.maxRecorderLagNanos = maxRecorderLagNanos;
+      this.carrierCpu = carrierCpu;
+      this.gcPauseNanos = gcPauseNanos;
+      this.targetRate = targetRate;
+      this.dispatchedRate = dispatchedRate;
+      this.reasons = reasons;
+    }
+
+    public boolean isGeneratorBound() {
+      return !reasons.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("GeneratorDiagnostics{scheduleLagP99=%dus, scheduleLagMax=%dus, schedulerQueue=%d, "
+                           + "eventBacklog=%d, recorderLag=%dus, carrierCpu=%.2f, gcPauses=%dms, targetRate=%.1f, "
+                           + "dispatchedRate=%.1f}%s",
+                           scheduleLagP99Nanos / 1000, scheduleLagMaxNanos / 1000, maxSchedulerQueue,
+                           maxEventBacklog, maxRecorderLagNanos / 1000, carrierCpu, gcPauseNanos / 1000000,
+                           targetRate, dispatchedRate,
+                           isGeneratorBound() ? " GENERATOR-BOUND: " + String.join("; ", reasons) : "");
+    }
+  }
+
+  private final ForkJoinPool pool;
+  private final String carrierPrefix;
+  private final QueueChannel<?> eventChannel;
+  private final LoadControl control;
+  private final Thresholds thresholds;
+  private final ScheduledExecutorService sampler;
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private final org.HdrHistogram.Recorder scheduleLag = new org.HdrHistogram.Recorder(3);
+  private final LongAdder recorded = new LongAdder();
+
+  // Only accessed by the sampler, or once it is stopped
+  private final Histogram scheduleLags = new Histogram(3);
+  private final Map<Long, Long> carrierCpuNanos = new HashMap<>();
+  private final long startNanos;
+  private final long startGcMillis;
+  private final long startDispatched;
+  private long lastSampleNanos;
+  private long lastRecorded;
+  private long carrierCpuTotal;
+  private int maxSchedulerQueue;
+  private int maxEventBacklog;
+  private long maxRecorderLagNanos;
+
+  /**
+   * Starts sampling with the default thresholds every 100 ms, for a load test run by the default
+   * fiber scheduler.
+   *
+   * @see #GeneratorDiagnostics(FiberScheduler, ReceivePort, LoadControl, Thresholds, long)
+   */
+  public GeneratorDiagnostics(final ReceivePort<?> eventChannel, final LoadControl control) {
+    this(DefaultFiberScheduler.getInstance(), eventChannel, control, Thresholds.DEFAULT, 100);
+  }
+
+  /**
+   * Starts sampling; create it right before starting the load test.
+   *
+   * @param scheduler the scheduler of the fibers performing requests; its queue and carrier threads
+   *                  are sampled if it is a FiberForkJoinScheduler.
+   * @param eventChannel the event channel of the load test, whose backlog is sampled if it is a
+   *                     queue channel (as created by Channels.newChannel), or null.
+   * @param control the control of the load test, providing the target and dispatched rates, or
+   *                null.
+   * @param thresholds the limits beyond which the run is generator-bound.
+   * @param periodMillis the sampling period.
+   */
+  public GeneratorDiagnostics(final FiberScheduler scheduler,
+                              final ReceivePort<?> eventChannel,
+                              final LoadControl control,
+                              final Thresholds thresholds,
+                              final long periodMillis)
+  {
+    if (scheduler instanceof FiberForkJoinScheduler) {
+      this.pool = ((FiberForkJoinScheduler) scheduler).getForkJoinPool();
+      this.carrierPrefix = scheduler.getName() + "-worker-";
+    } else {
+      this.pool = null;
+      this.carrierPrefix = null;
+    }
+    this.eventChannel = eventChannel instanceof QueueChannel ? (QueueChannel<?>) eventChannel : null;
+    this.control = control;
+    this.thresholds = thresholds;
+
+    this.startNanos = System.nanoTime();
+    this.lastSampleNanos = startNanos;
+    this.startGcMillis = gcMillis();
+    this.startDispatched = control != null ? control.getDispatched() : 0;
+    forEachCarrier((id, cpu) -> carrierCpuNanos.put(id, cpu));
+
+    this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread t = new Thread(r, "jbender-diagnostics");
+      t.setDaemon(true);
+      return t;
+    });
+    sampler.scheduleAtFixedRate(this::sample, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void record(final TimingEvent e) {
+    scheduleLag.recordValue(Math.max(e.overageNanos, 0));
+    recorded.increment();
+  }
+
+  private synchronized void sample() {
+    final long now = System.nanoTime();
+    if (pool != null) {
+      maxSchedulerQueue = (int) Math.max(maxSchedulerQueue, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+    }
+
+    if (eventChannel != null) {
+      final int backlog = eventChannel.getQueueLength();
+      maxEventBacklog = Math.max(maxEventBacklog, backlog);
+
+      // The time the recorder needs to catch up at its current pace
+      final long recordedNow = recorded.sum();
+      final long pace = recordedNow - lastRecorded;
+      if (backlog > 0) {
+        final long lagNanos = pace > 0 ? backlog * (now - lastSampleNanos) / pace : now - lastSampleNanos;
+        maxRecorderLagNanos = Math.max(maxRecorderLagNanos, lagNanos);
+      }
+      lastRecorded = recordedNow;
+    }
+
+    forEachCarrier((id, cpu) -> {
+      final Long previous = carrierCpuNanos.put(id, cpu);
+      carrierCpuTotal += cpu - (previous != null ? previous : 0);
+    });
+
+    scheduleLags.add(scheduleLag.getIntervalHistogram());
+    lastSampleNanos = now;
+  }
+
+  @FunctionalInterface
+  private interface CarrierConsumer {
+    void accept(long threadId, long cpuNanos);
+  }
+
+  private void forEachCarrier(final CarrierConsumer consumer) {
+    if (carrierPrefix == null || !threads.isThreadCpuTimeSupported()) {
+      return;
+    }
+    for (final ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+      if (info != null && info.getThreadName().contains(carrierPrefix)) {
+        final long cpu = threads.getThreadCpuTime(info.getThreadId());
+        if (cpu >= 0) {
+          consumer.accept(info.getThreadId(), cpu);
+        }
+      }
+    }
+  }
+
+  private static long gcMillis() {
+    long total = 0;
+    for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(gc.getCollectionTime(), 0);
+    }
+    return total;
+  }
+
+  /**
+   * Stops sampling and reports the diagnostics of the run so far; call it once the load test and
+   * the recording of its events are done.
+   */
+  public synchronized Report report() {
+    close();
+    sample();
+
+    final long durationNanos = System.nanoTime() - startNanos;
+    final long gcPauseNanos = TimeUnit.MILLISECONDS.toNanos(gcMillis() - startGcMillis);
+    final double carrierCpu = pool != null && durationNanos > 0
+        ? (double) carrierCpuTotal / durationNanos / pool.getParallelism()
+        : Double.NaN;
+    final double targetRate = control != null ? control.getRate() : Double.NaN;
+    final double dispatchedRate = control != null ? dispatchedRate(durationNanos) : Double.NaN;
+    final long lagP99 = scheduleLags.getValueAtPercentile(99);
+
+    final List<String> reasons = new ArrayList<>();
+    if (lagP99 > thresholds.maxScheduleLagNanos) {
+      reasons.add("schedule lag p99 " + lagP99 / 1000 + "us");
+    }
+    if (maxSchedulerQueue > thresholds.maxSchedulerQueue) {
+      reasons.add("scheduler queue " + maxSchedulerQueue);
+    }
+    if (maxEventBacklog > thresholds.maxEventBacklog) {
+      reasons.add("event backlog " + maxEventBacklog);
+    }
+    if (maxRecorderLagNanos > thresholds.maxRecorderLagNanos) {
+      reasons.add("recorder lag " + maxRecorderLagNanos / 1000 + "us");
+    }
+    if (carrierCpu > thresholds.maxCarrierCpu) {
+      reasons.add(String.format("carrier CPU %.2f", carrierCpu));
+    }
+    if (gcPauseNanos > thresholds.maxGcFraction * durationNanos) {
+      reasons.add("GC pauses " + gcPauseNanos / 1000000 + "ms");
+    }
+    if (dispatchedRate < thresholds.minRateRatio * targetRate) {
+      reasons.add(String.format("dispatched rate %.1f below target %.1f", dispatchedRate, targetRate));
+    }
+
+    return new Report(durationNanos, lagP99, scheduleLags.getMaxValue(), maxSchedulerQueue, maxEventBacklog,
+                      maxRecorderLagNanos, carrierCpu, gcPauseNanos, targetRate, dispatchedRate,
+                      Collections.unmodifiableList(reasons));
+  }
+
+  // The rate over the time requests were dispatched, which is shorter than the life of the
+  // diagnostics when the load test starts late or the report comes late
+  private double dispatchedRate(final long durationNanos) {
+    final long dispatched = control.getDispatched() - startDispatched;
+    final long firstNanos = control.getFirstDispatchNanos();
+    final long lastNanos = control.getLastDispatchNanos();
+    if (firstNanos - startNanos >= 0 && dispatched >= 2 && lastNanos - firstNanos > 0) {
+      // n dispatches span n - 1 intervals
+      return (dispatched - 1) * 1e9 / (lastNanos - firstNanos);
+    }
+    if (dispatched >= 1 && lastNanos - startNanos > 0) {
+      // The load test was already dispatching when the diagnostics started
+      return dispatched * 1e9 / (lastNanos - startNanos);
+    }
+    return dispatched * 1e9 / durationNanos;
+  }
+
+  @Override
+  public void close() {
+    sampler.shutdownNow();
+  }
+}
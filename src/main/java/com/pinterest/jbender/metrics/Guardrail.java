@@ -0,0 +1,58 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A condition on the metrics of the latest window under which a load test must be aborted.
+ */
+@FunctionalInterface
+public interface Guardrail {
+  /**
+   * @return a description of the violation if the condition is met, null otherwise.
+   */
+  String check(MetricsRecorder metrics);
+
+  /**
+   * Trips when the fraction of failed requests exceeds the given one.
+   */
+  static Guardrail errorRateAbove(final double fraction) {
+    return m -> m.getErrorRate() > fraction
+        ? String.format("error rate %.2f%% above %.2f%%", 100 * m.getErrorRate(), 100 * fraction)
+        : null;
+  }
+
+  /**
+   * Trips when the given latency percentile exceeds the given limit.
+   */
+  static Guardrail latencyAbove(final double percentile, final long limit, final TimeUnit unit) {
+    final long limitNanos = unit.toNanos(limit);
+    return m -> {
+      final long latency = m.getLatencyAtPercentile(percentile);
+      return latency > limitNanos
+          ? String.format("p%s latency %d us above %d us", percentile, latency / 1000, limitNanos / 1000)
+          : null;
+    };
+  }
+
+  /**
+   * Trips when the achieved throughput falls below the given fraction of the offered throughput.
+   */
+  static Guardrail achievedRateBelow(final double fraction) {
+    return m -> m.getAchievedRate() < fraction * m.getOfferedRate()
+        ? String.format("achieved rate %.1f below %.0f%% of offered rate %.1f", m.getAchievedRate(), 100 * fraction,
+                        m.getOfferedRate())
+        : null;
+  }
+}
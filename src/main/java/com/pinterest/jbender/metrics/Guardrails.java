@@ -0,0 +1,82 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import com.pinterest.jbender.LoadControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Aborts a load test as soon as one of its guardrails trips, evaluating them on the metrics of
+ * every window of a MetricsRecorder. The load test is stopped through its LoadControl, so that
+ * dispatching stops and in-flight requests drain, and the fired guardrail is recorded as the stop
+ * reason.
+ */
+public class Guardrails implements Consumer<MetricsRecorder> {
+  private static final Logger LOG = LoggerFactory.getLogger(Guardrails.class);
+
+  private final LoadControl control;
+  private final long minRequests;
+  private final List<Guardrail> guardrails;
+  private volatile String tripped;
+
+  /**
+   * Starts evaluating the guardrails on each window of the given metrics.
+   *
+   * @param metrics the metrics of the load test.
+   * @param control the control of the load test, used to stop it.
+   * @param minRequests the minimal number of requests dispatched or completed in a window for the
+   *                    guardrails to be evaluated, so that they do not trip on too few samples;
+   *                    requests dispatched count too, so that a target that stops responding
+   *                    still trips the achieved rate guardrail.
+   * @param guardrails the conditions under which to abort.
+   */
+  public Guardrails(final MetricsRecorder metrics,
+                    final LoadControl control,
+                    final long minRequests,
+                    final Guardrail... guardrails)
+  {
+    this.control = control;
+    this.minRequests = minRequests;
+    this.guardrails = Arrays.asList(guardrails);
+    metrics.addWindowListener(this);
+  }
+
+  @Override
+  public void accept(final MetricsRecorder metrics) {
+    if (tripped != null || Math.max(metrics.getWindowRequests(), metrics.getWindowDispatched()) < minRequests) {
+      return;
+    }
+
+    for (final Guardrail guardrail : guardrails) {
+      final String violation = guardrail.check(metrics);
+      if (violation != null) {
+        tripped = violation;
+        LOG.warn("Guardrail tripped, aborting load test: {}", violation);
+        control.stop("guardrail: " + violation);
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the description of the guardrail that tripped, null if none did.
+   */
+  public String tripped() {
+    return tripped;
+  }
+}
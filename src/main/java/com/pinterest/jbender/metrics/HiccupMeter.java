@@ -0,0 +1,136 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures stalls of the load generator's own JVM (GC and safepoint pauses, scheduling delays),
+ * in the manner of jHiccup: a dedicated thread repeatedly sleeps for a short resolution and
+ * records how much longer than requested it actually slept.
+ *
+ * Hiccups are recorded in a histogram, and the stalls longer than a threshold are kept (up to a
+ * fixed number of recent ones) so that the stall time overlapping any request can be computed:
+ * that part of the request's duration is attributable to the generator rather than the service.
+ */
+public class HiccupMeter implements Closeable {
+  private static final int MAX_STALLS = 4096;
+
+  private final long resolutionNanos;
+  private final long thresholdNanos;
+  private final Thread thread;
+  private final org.HdrHistogram.Recorder hiccups = new org.HdrHistogram.Recorder(3);
+  private final Histogram accumulated = new Histogram(3);
+
+  // Ring of recent stalls, as start and end nanoTime pairs; written only by the meter thread
+  private final long[] stalls = new long[2 * MAX_STALLS];
+  private long stallCount;
+
+  // The end of the latest stall, to skip looking up stalls for requests started after it
+  private volatile long lastStallEnd = Long.MIN_VALUE;
+
+  private volatile boolean closed;
+
+  /**
+   * Starts measuring with a 1 ms resolution, keeping stalls longer than 1 ms.
+   */
+  public HiccupMeter() {
+    this(TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  /**
+   * Starts measuring.
+   *
+   * @param resolutionNanos the time the meter thread sleeps between measurements.
+   * @param thresholdNanos the minimal hiccup considered a stall that requests may overlap.
+   */
+  public HiccupMeter(final long resolutionNanos, final long thresholdNanos) {
+    this.resolutionNanos = resolutionNanos;
+    this.thresholdNanos = thresholdNanos;
+    this.thread = new Thread(this::run, "jbender-hiccup-meter");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void run() {
+    while (!closed) {
+      final long start = System.nanoTime();
+      LockSupport.parkNanos(resolutionNanos);
+      final long end = System.nanoTime();
+      final long hiccup = Math.max(end - start - resolutionNanos, 0);
+      hiccups.recordValue(hiccup);
+      if (hiccup >= thresholdNanos) {
+        addStall(end - hiccup, end);
+      }
+    }
+  }
+
+  synchronized void addStall(final long start, final long end) {
+    final int i = (int) (stallCount++ % MAX_STALLS) * 2;
+    stalls[i] = start;
+    stalls[i + 1] = end;
+    lastStallEnd = end;
+  }
+
+  /**
+   * @return the total stall time overlapping the given interval of System#nanoTime values.
+   */
+  public long stalledNanos(final long startNanos, final long endNanos) {
+    if (lastStallEnd - startNanos <= 0) {
+      return 0;
+    }
+
+    synchronized (this) {
+      long stalled = 0;
+      final long count = Math.min(stallCount, MAX_STALLS);
+      for (long n = stallCount - 1; n >= stallCount - count; n--) {
+        final int i = (int) (n % MAX_STALLS) * 2;
+        if (stalls[i + 1] - startNanos <= 0) {
+          // Stalls are in chronological order, earlier ones cannot overlap
+          break;
+        }
+        final long overlap = Math.min(stalls[i + 1], endNanos) - Math.max(stalls[i], startNanos);
+        if (overlap > 0) {
+          stalled += overlap;
+        }
+      }
+      return stalled;
+    }
+  }
+
+  /**
+   * @return the stall time overlapping the execution of the request of an event.
+   */
+  public long stalledNanos(final TimingEvent<?> e) {
+    return stalledNanos(e.startNanos, e.startNanos + e.durationNanos);
+  }
+
+  /**
+   * @return the histogram of all hiccups measured so far, in nanoseconds.
+   */
+  public synchronized Histogram histogram() {
+    accumulated.add(hiccups.getIntervalHistogram());
+    return accumulated.copy();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(thread);
+  }
+}
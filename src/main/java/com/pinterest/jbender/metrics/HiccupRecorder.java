@@ -0,0 +1,64 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Records the duration of each TimingEvent both raw and with the generator stalls measured by a
+ * HiccupMeter excluded, so that latency inflated by pauses of the load generator is not blamed on
+ * the service.
+ */
+public class HiccupRecorder implements Recorder {
+  private final HiccupMeter meter;
+  private final long scale;
+
+  // The durations as measured
+  public final Histogram raw;
+
+  // The durations minus the generator stalls they overlapped
+  public final Histogram corrected;
+
+  // The number of events that overlapped a generator stall
+  public long stalledCount;
+
+  // The total stall time overlapped by events
+  public long stalledNanos;
+
+  /**
+   * @param meter the meter of the generator stalls, running alongside the load test.
+   * @param raw the histogram into which durations are written as measured.
+   * @param corrected the histogram into which durations are written with stalls excluded.
+   * @param scale the value by which to divide the durations before recording them, as in
+   *              HdrHistogramRecorder.
+   */
+  public HiccupRecorder(final HiccupMeter meter, final Histogram raw, final Histogram corrected, final long scale) {
+    this.meter = meter;
+    this.raw = raw;
+    this.corrected = corrected;
+    this.scale = scale;
+  }
+
+  @Override
+  public void record(final TimingEvent e) {
+    final long stalled = meter.stalledNanos((TimingEvent<?>) e);
+    if (stalled > 0) {
+      stalledCount++;
+      stalledNanos += stalled;
+    }
+    raw.recordValue(e.durationNanos / scale);
+    corrected.recordValue(Math.max(e.durationNanos - stalled, 0) / scale);
+  }
+}
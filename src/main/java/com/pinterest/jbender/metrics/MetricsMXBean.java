@@ -0,0 +1,55 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX management interface of a MetricsRecorder. Rates and percentiles are those of the latest
+ * complete window, durations are in nanoseconds.
+ */
+public interface MetricsMXBean {
+  double getOfferedRate();
+
+  double getAchievedRate();
+
+  long getInFlight();
+
+  long getRequests();
+
+  long getErrors();
+
+  long getWindowRequests();
+
+  // The number of requests dispatched during the window, whether they completed or not
+  long getWindowDispatched();
+
+  // The fraction of the requests of the window that failed
+  double getErrorRate();
+
+  Map<String, Long> getErrorsByClass();
+
+  long getLatencyP50();
+
+  long getLatencyP90();
+
+  long getLatencyP99();
+
+  long getLatencyP999();
+
+  long getLatencyMax();
+
+  long getDispatcherLagP99();
+
+  long getDispatcherLagMax();
+}
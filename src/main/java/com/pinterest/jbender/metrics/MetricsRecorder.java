@@ -0,0 +1,254 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import com.pinterest.jbender.LoadControl;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import org.HdrHistogram.Histogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Records live metrics of a running load test over a rolling window: offered and achieved
+ * throughput, in-flight requests, latency percentiles, errors by exception class and dispatcher
+ * lag (the overage of each request, i.e. how late it was dispatched).
+ *
+ * Recording does not lock: durations go to wait-free HdrHistogram recorders whose interval
+ * histograms are swapped out once per window by a background thread. The metrics of the latest
+ * complete window can be read through JMX (see #register) or served in the Prometheus text
+ * format (see PrometheusEndpoint).
+ */
+public class MetricsRecorder implements Recorder, MetricsMXBean, Closeable {
+  private final LoadControl control;
+  private final org.HdrHistogram.Recorder latency = new org.HdrHistogram.Recorder(3);
+  private final org.HdrHistogram.Recorder lag = new org.HdrHistogram.Recorder(3);
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final ConcurrentHashMap<String, LongAdder> errorsByClass = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService roller;
+  private final CopyOnWriteArrayList<Consumer<MetricsRecorder>> listeners = new CopyOnWriteArrayList<>();
+
+  private volatile Window window;
+
+  /**
+   * @param control the control of the load test, providing the number of dispatched requests for
+   *                the offered throughput and in-flight count, or null if unavailable.
+   * @param windowMillis the length of the window over which rates and percentiles are computed.
+   */
+  public MetricsRecorder(final LoadControl control, final long windowMillis) {
+    this.control = control;
+    this.window = new Window(System.nanoTime(), dispatched(), 0, 0, new Histogram(3), new Histogram(3), null);
+    this.roller = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread t = new Thread(r, "jbender-metrics");
+      t.setDaemon(true);
+      return t;
+    });
+    roller.scheduleAtFixedRate(this::roll, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void record(final TimingEvent e) {
+    latency.recordValue(e.durationNanos);
+    lag.recordValue(Math.max(e.overageNanos, 0));
+    if (!e.isSuccess) {
+      final String errorClass = e.exception != null ? e.exception.getClass().getName() : "unknown";
+      errorsByClass.computeIfAbsent(errorClass, c -> new LongAdder()).increment();
+      errors.increment();
+    }
+    requests.increment();
+  }
+
+  /**
+   * Closes the current window; called periodically.
+   */
+  void roll() {
+    final Histogram latencies = latency.getIntervalHistogram();
+    final Histogram lags = lag.getIntervalHistogram();
+    window = new Window(System.nanoTime(), dispatched(), requests.sum(), errors.sum(), latencies, lags, window);
+    for (final Consumer<MetricsRecorder> listener : listeners) {
+      listener.accept(this);
+    }
+  }
+
+  /**
+   * Adds a listener called, in the background thread, every time a window is complete.
+   */
+  public void addWindowListener(final Consumer<MetricsRecorder> listener) {
+    listeners.add(listener);
+  }
+
+  private long dispatched() {
+    return control != null ? control.getDispatched() : 0;
+  }
+
+  /**
+   * Registers this recorder with the platform MBean server.
+   *
+   * @param name the name of the load test, used in the MBean name.
+   * @return the name of the registered MBean.
+   */
+  public ObjectName register(final String name) throws JMException {
+    final ObjectName objectName = new ObjectName("com.pinterest.jbender:type=Metrics,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+
+  @Override
+  public void close() {
+    roller.shutdownNow();
+  }
+
+  @Override
+  public double getOfferedRate() {
+    return control != null ? window.offeredRate : Double.NaN;
+  }
+
+  @Override
+  public double getAchievedRate() {
+    return window.achievedRate;
+  }
+
+  @Override
+  public long getInFlight() {
+    return control != null ? Math.max(control.getDispatched() - requests.sum(), 0) : 0;
+  }
+
+  @Override
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  @Override
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  @Override
+  public Map<String, Long> getErrorsByClass() {
+    final Map<String, Long> counts = new TreeMap<>();
+    errorsByClass.forEach((c, n) -> counts.put(c, n.sum()));
+    return counts;
+  }
+
+  @Override
+  public long getWindowRequests() {
+    return window.latencies.getTotalCount();
+  }
+
+  @Override
+  public long getWindowDispatched() {
+    return window.windowDispatched;
+  }
+
+  @Override
+  public double getErrorRate() {
+    return window.errorRate;
+  }
+
+  /**
+   * @return the given latency percentile over the latest complete window, in nanoseconds.
+   */
+  public long getLatencyAtPercentile(final double percentile) {
+    return window.latencies.getValueAtPercentile(percentile);
+  }
+
+  @Override
+  public long getLatencyP50() {
+    return window.latencies.getValueAtPercentile(50);
+  }
+
+  @Override
+  public long getLatencyP90() {
+    return window.latencies.getValueAtPercentile(90);
+  }
+
+  @Override
+  public long getLatencyP99() {
+    return window.latencies.getValueAtPercentile(99);
+  }
+
+  @Override
+  public long getLatencyP999() {
+    return window.latencies.getValueAtPercentile(99.9);
+  }
+
+  @Override
+  public long getLatencyMax() {
+    return window.latencies.getMaxValue();
+  }
+
+  @Override
+  public long getDispatcherLagP99() {
+    return window.lags.getValueAtPercentile(99);
+  }
+
+  @Override
+  public long getDispatcherLagMax() {
+    return window.lags.getMaxValue();
+  }
+
+  /**
+   * The metrics of a complete window.
+   */
+  private static final class Window {
+    final long nanoTime;
+    final long dispatched;
+    final long windowDispatched;
+    final long requests;
+    final long errors;
+    final Histogram latencies;
+    final Histogram lags;
+    final double offeredRate;
+    final double achievedRate;
+    final double errorRate;
+
+    Window(final long nanoTime, final long dispatched, final long requests, final long errors,
+           final Histogram latencies, final Histogram lags, final Window previous)
+    {
+      this.nanoTime = nanoTime;
+      this.dispatched = dispatched;
+      this.requests = requests;
+      this.errors = errors;
+      this.latencies = latencies;
+      this.lags = lags;
+
+      if (previous != null) {
+        final double seconds = (nanoTime - previous.nanoTime) / 1e9;
+        this.windowDispatched = dispatched - previous.dispatched;
+        this.offeredRate = windowDispatched / seconds;
+        this.achievedRate = (requests - previous.requests) / seconds;
+        this.errorRate = requests > previous.requests
+            ? (double) (errors - previous.errors) / (requests - previous.requests)
+            : 0;
+      } else {
+        this.windowDispatched = 0;
+        this.offeredRate = 0;
+        this.achievedRate = 0;
+        this.errorRate = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves the metrics of a MetricsRecorder in the Prometheus text format on /metrics, using the
+ * HTTP server embedded in the JDK. Durations are in seconds.
+ */
+public class PrometheusEndpoint implements Closeable {
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final MetricsRecorder metrics;
+  private final HttpServer server;
+
+  /**
+   * Starts serving metrics.
+   *
+   * @param metrics the metrics to serve.
+   * @param port the local port to listen on, 0 to use any free port.
+   */
+  public PrometheusEndpoint(final MetricsRecorder metrics, final int port) throws IOException {
+    this.metrics = metrics;
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/metrics", exchange -> {
+      final byte[] body = format().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (final OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return the current metrics in the Prometheus text format.
+   */
+  public String format() {
+    final StringBuilder sb = new StringBuilder();
+    gauge(sb, "jbender_offered_rate", "Requests dispatched per second", metrics.getOfferedRate());
+    gauge(sb, "jbender_achieved_rate", "Requests completed per second", metrics.getAchievedRate());
+    gauge(sb, "jbender_in_flight", "Requests dispatched but not completed", metrics.getInFlight());
+
+    header(sb, "jbender_requests_total", "Requests completed", "counter");
+    sample(sb, "jbender_requests_total", "", metrics.getRequests());
+
+    header(sb, "jbender_errors_total", "Requests failed, by exception class", "counter");
+    for (final Map.Entry<String, Long> e : metrics.getErrorsByClass().entrySet()) {
+      sample(sb, "jbender_errors_total", "{class=\"" + escapeLabelValue(e.getKey()) + "\"}", e.getValue());
+    }
+
+    header(sb, "jbender_latency_seconds", "Request latency over the last window", "summary");
+    quantile(sb, "jbender_latency_seconds", "0.5", metrics.getLatencyP50());
+    quantile(sb, "jbender_latency_seconds", "0.9", metrics.getLatencyP90());
+    quantile(sb, "jbender_latency_seconds", "0.99", metrics.getLatencyP99());
+    quantile(sb, "jbender_latency_seconds", "0.999", metrics.getLatencyP999());
+    quantile(sb, "jbender_latency_seconds", "1", metrics.getLatencyMax());
+
+    header(sb, "jbender_dispatcher_lag_seconds", "Dispatch delay behind schedule over the last window", "summary");
+    quantile(sb, "jbender_dispatcher_lag_seconds", "0.99", metrics.getDispatcherLagP99());
+    quantile(sb, "jbender_dispatcher_lag_seconds", "1", metrics.getDispatcherLagMax());
+    return sb.toString();
+  }
+
+  private static void gauge(final StringBuilder sb, final String name, final String help, final double value) {
+    header(sb, name, help, "gauge");
+    sample(sb, name, "", value);
+  }
+
+  private static void quantile(final StringBuilder sb, final String name, final String quantile, final long nanos) {
+    sample(sb, name, "{quantile=\"" + quantile + "\"}", nanos / 1e9);
+  }
+
+  // Label values escape backslashes, double quotes and line feeds in the text format
+  static String escapeLabelValue(final String value) {
+    final StringBuilder sb = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void header(final StringBuilder sb, final String name, final String help, final String type) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(final StringBuilder sb, final String name, final String labels, final double value) {
+    sb.append(name).append(labels).append(' ');
+    if (Double.isNaN(value)) {
+      sb.append("NaN");
+    } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      sb.append((long) value);
+    } else {
+      sb.append(String.format(Locale.ROOT, "%.9g", value));
+    }
+    sb.append('\n');
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
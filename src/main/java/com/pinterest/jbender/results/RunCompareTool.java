@@ -0,0 +1,81 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.results;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Command line tool comparing two saved runs, exiting with status 1 if the candidate regresses.
+ *
+ * <pre>
+ *   RunCompareTool &lt;baseline&gt; &lt;candidate&gt; [--tolerance FRACTION] [--percentiles P,P,...]
+ *                  [--iterations N] [--confidence LEVEL]
+ * </pre>
+ *
+ * Latencies are printed in nanoseconds.
+ */
+public final class RunCompareTool {
+  private RunCompareTool() {}
+
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: RunCompareTool <baseline> <candidate> [--tolerance FRACTION] "
+                         + "[--percentiles P,P,...] [--iterations N] [--confidence LEVEL]");
+      System.exit(2);
+    }
+
+    double tolerance = 0.1;
+    double[] percentiles = RunComparison.DEFAULT_PERCENTILES;
+    int iterations = 1000;
+    double confidence = 0.95;
+    for (int i = 2; i < args.length; i++) {
+      switch (args[i]) {
+        case "--tolerance":
+          tolerance = Double.parseDouble(args[++i]);
+          break;
+        case "--percentiles":
+          final String[] values = args[++i].split(",");
+          percentiles = new double[values.length];
+          for (int p = 0; p < values.length; p++) {
+            percentiles[p] = Double.parseDouble(values[p]);
+          }
+          break;
+        case "--iterations":
+          iterations = Integer.parseInt(args[++i]);
+          break;
+        case "--confidence":
+          confidence = Double.parseDouble(args[++i]);
+          break;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          System.exit(2);
+      }
+    }
+
+    final RunResult baseline = RunResult.load(Paths.get(args[0]));
+    final RunResult candidate = RunResult.load(Paths.get(args[1]));
+    final List<RunComparison.Row> rows =
+        new RunComparison(percentiles, tolerance, iterations, confidence, 0).compare(baseline, candidate);
+
+    System.out.println(String.format("%-12s %14s %14s %8s %s", "metric", baseline.name, candidate.name, "ratio",
+                                     "confidence interval"));
+    for (final RunComparison.Row row : rows) {
+      System.out.println(row);
+    }
+    if (RunComparison.hasRegression(rows)) {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.results;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares a candidate run with a baseline run, percentile by percentile and on throughput.
+ *
+ * Each metric is compared as the ratio of the candidate value to the baseline value, with a
+ * confidence interval estimated by bootstrap: the interval histograms of each run are resampled
+ * with replacement and merged, and the ratio computed for each resample. A latency percentile
+ * regresses when the whole confidence interval of its ratio is above 1 + tolerance; throughput
+ * regresses when the whole interval is below 1 - tolerance.
+ */
+public class RunComparison {
+  /**
+   * The comparison of a single metric.
+   */
+  public static final class Row {
+    public final String metric;
+    public final double baseline;
+    public final double candidate;
+
+    // The ratio of the candidate value to the baseline value, and its confidence interval
+    public final double ratio;
+    public final double lower;
+    public final double upper;
+
+    public final boolean regression;
+
+    Row(final String metric, final double baseline, final double candidate, final double lower, final double upper,
+        final boolean regression)
+    {
+      this.metric = metric;
+      this.baseline = baseline;
+      this.candidate = candidate;
+      this.ratio = ratio(candidate, baseline);
+      this.lower = lower;
+      this.upper = upper;
+      this.regression = regression;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-12s %14.3f %14.3f %8.3f [%.3f, %.3f]%s", metric, baseline, candidate, ratio, lower,
+                           upper, regression ? "  REGRESSION" : "");
+    }
+  }
+
+  public static final double[] DEFAULT_PERCENTILES = {50, 90, 99, 99.9};
+
+  private final double[] percentiles;
+  private final double tolerance;
+  private final int iterations;
+  private final double confidence;
+  private final long seed;
+
+  /**
+   * @param percentiles the latency percentiles to compare.
+   * @param tolerance the relative change beyond which a significant difference is a regression.
+   * @param iterations the number of bootstrap resamples.
+   * @param confidence the confidence level of the intervals, for example 0.95.
+   * @param seed the seed of the resampling, so that comparisons are reproducible.
+   */
+  public RunComparison(final double[] percentiles,
+                       final double tolerance,
+                       final int iterations,
+                       final double confidence,
+                       final long seed)
+  {
+    this.percentiles = percentiles;
+    this.tolerance = tolerance;
+    this.iterations = iterations;
+    this.confidence = confidence;
+    this.seed = seed;
+  }
+
+  /**
+   * Compares the default percentiles with 1,000 resamples and 95% confidence.
+   */
+  public RunComparison(final double tolerance) {
+    this(DEFAULT_PERCENTILES, tolerance, 1000, 0.95, 0);
+  }
+
+  /**
+   * @return one row per percentile, followed by a row for throughput.
+   */
+  public List<Row> compare(final RunResult baseline, final RunResult candidate) {
+    final int metrics = percentiles.length + 1;
+    final double[][] ratios = new double[metrics][iterations];
+    final Random random = new Random(seed);
+    final Histogram baseSample = new Histogram(3);
+    final Histogram candSample = new Histogram(3);
+
+    for (int b = 0; b < iterations; b++) {
+      final double baseMillis = resample(baseline.intervals, baseSample, random);
+      final double candMillis = resample(candidate.intervals, candSample, random);
+      for (int p = 0; p < percentiles.length; p++) {
+        ratios[p][b] = ratio(candSample.getValueAtPercentile(percentiles[p]) * (double) candidate.scale,
+                             baseSample.getValueAtPercentile(percentiles[p]) * (double) baseline.scale);
+      }
+      ratios[percentiles.length][b] = ratio(candSample.getTotalCount() / candMillis,
+                                            baseSample.getTotalCount() / baseMillis);
+    }
+
+    final Histogram base = baseline.histogram();
+    final Histogram cand = candidate.histogram();
+    final double alpha = (1 - confidence) / 2;
+    final List<Row> rows = new ArrayList<>(metrics);
+    for (int m = 0; m < metrics; m++) {
+      Arrays.sort(ratios[m]);
+      final double lower = ratios[m][(int) Math.floor(alpha * (iterations - 1))];
+      final double upper = ratios[m][(int) Math.ceil((1 - alpha) * (iterations - 1))];
+      if (m < percentiles.length) {
+        rows.add(new Row("p" + format(percentiles[m]),
+                         base.getValueAtPercentile(percentiles[m]) * (double) baseline.scale,
+                         cand.getValueAtPercentile(percentiles[m]) * (double) candidate.scale,
+                         lower, upper, lower > 1 + tolerance));
+      } else {
+        rows.add(new Row("throughput", baseline.throughput(), candidate.throughput(), lower, upper,
+                         upper < 1 - tolerance));
+      }
+    }
+    return Collections.unmodifiableList(rows);
+  }
+
+  /**
+   * Merges a resample of the given intervals into the sample histogram.
+   *
+   * @return the total duration of the resampled intervals in milliseconds.
+   */
+  private static double resample(final List<Histogram> intervals, final Histogram sample, final Random random) {
+    sample.reset();
+    double millis = 0;
+    for (int i = 0; i < intervals.size(); i++) {
+      final Histogram h = intervals.get(random.nextInt(intervals.size()));
+      sample.add(h);
+      millis += Math.max(h.getEndTimeStamp() - h.getStartTimeStamp(), 1);
+    }
+    return millis;
+  }
+
+  private static double ratio(final double candidate, final double baseline) {
+    if (baseline == 0) {
+      return candidate == 0 ? 1 : Double.POSITIVE_INFINITY;
+    }
+    return candidate / baseline;
+  }
+
+  private static String format(final double percentile) {
+    return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+  }
+
+  public static boolean hasRegression(final List<Row> rows) {
+    for (final Row row : rows) {
+      if (row.regression) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.results;
+
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the durations of TimingEvents into a histogram per interval of the run (for example one
+ * per second), from which a RunResult is built once the run is over. Intervals make it possible to
+ * estimate the variability of the results when comparing runs.
+ *
+ * Events are assigned to intervals by the time their request completed, and the run ends with the
+ * last request to complete, so that neither a recorder lagging behind the load test nor the time at
+ * which the result is built changes the result.
+ */
+public class RunRecorder implements Recorder {
+  private final long scale;
+  private final long intervalNanos;
+  private final List<Histogram> intervals = new ArrayList<>();
+
+  private long startNanos;
+  private long startEpochMillis;
+  private long endNanos;
+  private long errorCount;
+
+  /**
+   * @param scale the value by which to divide durations before recording them, as in
+   *              HdrHistogramRecorder.
+   * @param intervalMillis the length of each interval.
+   */
+  public RunRecorder(final long scale, final long intervalMillis) {
+    this.scale = scale;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+  }
+
+  @Override
+  public void record(final TimingEvent e) {
+    final long completedNanos = e.startNanos + e.durationNanos;
+    if (intervals.isEmpty()) {
+      // The run starts with the first request recorded
+      startNanos = e.startNanos;
+      startEpochMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      endNanos = completedNanos;
+    } else if (completedNanos - endNanos > 0) {
+      endNanos = completedNanos;
+    }
+
+    // Events may arrive out of order, late ones still count in the interval they belong to
+    final int index = (int) Math.max((completedNanos - startNanos) / intervalNanos, 0);
+    while (intervals.size() <= index) {
+      intervals.add(newInterval(intervals.size()));
+    }
+
+    if (!e.isSuccess) {
+      errorCount++;
+    }
+    intervals.get(index).recordValue(e.durationNanos / scale);
+  }
+
+  private Histogram newInterval(final int index) {
+    final Histogram h = new Histogram(3);
+    h.setStartTimeStamp(epochMillis(index * intervalNanos));
+    h.setEndTimeStamp(epochMillis((index + 1) * intervalNanos));
+    return h;
+  }
+
+  private long epochMillis(final long runNanos) {
+    return startEpochMillis + TimeUnit.NANOSECONDS.toMillis(runNanos);
+  }
+
+  /**
+   * Builds the result of the run, once all events are recorded.
+   *
+   * @param name the name of the run.
+   * @param metadata free-form metadata of the run.
+   */
+  public RunResult result(final String name, final Map<String, String> metadata) {
+    final List<Histogram> all = new ArrayList<>(intervals);
+    long durationMillis = 0;
+    if (!all.isEmpty()) {
+      // The last interval ends with the last request
+      final Histogram current = all.get(all.size() - 1);
+      final Histogram last = current.copy();
+      last.setStartTimeStamp(current.getStartTimeStamp());
+      last.setEndTimeStamp(epochMillis(endNanos - startNanos));
+      all.set(all.size() - 1, last);
+      durationMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+    }
+    return new RunResult(name, startEpochMillis, durationMillis, errorCount, scale, metadata, all);
+  }
+}
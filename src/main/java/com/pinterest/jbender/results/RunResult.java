@@ -0,0 +1,175 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.results;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The results of a load test run: its interval histograms and metadata.
+ *
+ * Results are saved as an HdrHistogram log (compressed interval histograms, readable by the
+ * HdrHistogram tools), preceded by comment lines holding the metadata, and gzipped if the file
+ * name ends with ".gz".
+ */
+public class RunResult {
+  private static final String META_PREFIX = "#jbender ";
+
+  public final String name;
+  public final long startEpochMillis;
+  public final long durationMillis;
+  public final long errorCount;
+
+  // The value by which durations in nanoseconds were divided before being recorded
+  public final long scale;
+
+  // Free-form metadata, such as the target, build or configuration of the run
+  public final Map<String, String> metadata;
+
+  // The histograms of the successive intervals of the run
+  public final List<Histogram> intervals;
+
+  public RunResult(final String name,
+                   final long startEpochMillis,
+                   final long durationMillis,
+                   final long errorCount,
+                   final long scale,
+                   final Map<String, String> metadata,
+                   final List<Histogram> intervals)
+  {
+    this.name = name;
+    this.startEpochMillis = startEpochMillis;
+    this.durationMillis = durationMillis;
+    this.errorCount = errorCount;
+    this.scale = scale;
+    this.metadata = Collections.unmodifiableMap(metadata);
+    this.intervals = Collections.unmodifiableList(intervals);
+  }
+
+  /**
+   * @return the histogram of the whole run.
+   */
+  public Histogram histogram() {
+    final Histogram merged = new Histogram(3);
+    for (final Histogram h : intervals) {
+      merged.add(h);
+    }
+    return merged;
+  }
+
+  public long requestCount() {
+    long count = 0;
+    for (final Histogram h : intervals) {
+      count += h.getTotalCount();
+    }
+    return count;
+  }
+
+  /**
+   * @return the throughput of the run in requests per second.
+   */
+  public double throughput() {
+    return durationMillis > 0 ? requestCount() * 1000.0 / durationMillis : 0;
+  }
+
+  public void save(final Path path) throws IOException {
+    try (final OutputStream file = Files.newOutputStream(path);
+         final OutputStream out = path.toString().endsWith(".gz") ? new GZIPOutputStream(file) : file) {
+      final PrintStream ps = new PrintStream(out, false, "UTF-8");
+      ps.println(META_PREFIX + "name=" + name);
+      ps.println(META_PREFIX + "start=" + startEpochMillis);
+      ps.println(META_PREFIX + "duration=" + durationMillis);
+      ps.println(META_PREFIX + "errors=" + errorCount);
+      ps.println(META_PREFIX + "scale=" + scale);
+      for (final Map.Entry<String, String> e : metadata.entrySet()) {
+        ps.println(META_PREFIX + "meta." + e.getKey() + "=" + e.getValue());
+      }
+
+      final HistogramLogWriter writer = new HistogramLogWriter(ps);
+      writer.outputLogFormatVersion();
+      writer.outputStartTime(startEpochMillis);
+      writer.outputLegend();
+      for (final Histogram h : intervals) {
+        // Interval maxima are output in seconds
+        writer.outputIntervalHistogram((h.getStartTimeStamp() - startEpochMillis) / 1000.0,
+                                       (h.getEndTimeStamp() - startEpochMillis) / 1000.0, h, 1e9 / scale);
+      }
+      ps.flush();
+    }
+  }
+
+  public static RunResult load(final Path path) throws IOException {
+    final byte[] bytes;
+    try (final InputStream file = Files.newInputStream(path);
+         final InputStream in = path.toString().endsWith(".gz") ? new GZIPInputStream(file) : file) {
+      final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      final byte[] chunk = new byte[8192];
+      for (int n; (n = in.read(chunk)) > 0; ) {
+        buffer.write(chunk, 0, n);
+      }
+      bytes = buffer.toByteArray();
+    }
+
+    final Map<String, String> fields = new LinkedHashMap<>();
+    final Map<String, String> metadata = new LinkedHashMap<>();
+    try (final BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+      for (String line; (line = reader.readLine()) != null && line.startsWith("#"); ) {
+        final int eq = line.indexOf('=');
+        if (line.startsWith(META_PREFIX) && eq > 0) {
+          final String key = line.substring(META_PREFIX.length(), eq);
+          final String value = line.substring(eq + 1);
+          if (key.startsWith("meta.")) {
+            metadata.put(key.substring("meta.".length()), value);
+          } else {
+            fields.put(key, value);
+          }
+        }
+      }
+    }
+
+    final List<Histogram> intervals = new ArrayList<>();
+    final HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(bytes));
+    for (EncodableHistogram h; (h = reader.nextIntervalHistogram()) != null; ) {
+      intervals.add((Histogram) h);
+    }
+
+    return new RunResult(fields.getOrDefault("name", path.getFileName().toString()),
+                         Long.parseLong(fields.getOrDefault("start", "0")),
+                         Long.parseLong(fields.getOrDefault("duration", "0")),
+                         Long.parseLong(fields.getOrDefault("errors", "0")),
+                         Long.parseLong(fields.getOrDefault("scale", "1")),
+                         metadata, intervals);
+  }
+}
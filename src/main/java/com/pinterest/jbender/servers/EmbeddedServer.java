@@ -0,0 +1,318 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.servers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lightweight in-process echo server for tests and benchmarks, whose service time follows a
+ * given distribution and which fails a given fraction of requests.
+ *
+ * A single NIO thread accepts connections, reads requests and writes their responses once their
+ * service time has elapsed. Requests on the same connection are answered in order, so a request
+ * waits for the ones before it as on a real server with one worker per connection; requests on
+ * different connections do not wait for each other.
+ */
+public abstract class EmbeddedServer implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(EmbeddedServer.class);
+
+  private static final long MIN_SELECT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private static final class Connection {
+    final SocketChannel channel;
+    final SelectionKey key;
+    final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    ByteBuffer in = ByteBuffer.allocate(4096);
+    long lastDueNanos;
+    boolean closed;
+
+    Connection(final SocketChannel channel, final SelectionKey key) {
+      this.channel = channel;
+      this.key = key;
+    }
+  }
+
+  private static final class Response implements Comparable<Response> {
+    final long dueNanos;
+    final long sequence;
+    final Connection connection;
+    final ByteBuffer data;
+
+    Response(final long dueNanos, final long sequence, final Connection connection, final ByteBuffer data) {
+      this.dueNanos = dueNanos;
+      this.sequence = sequence;
+      this.connection = connection;
+      this.data = data;
+    }
+
+    @Override
+    public int compareTo(final Response o) {
+      final int c = Long.compare(dueNanos - o.dueNanos, 0);
+      return c != 0 ? c : Long.compare(sequence, o.sequence);
+    }
+  }
+
+  private final ServiceTime serviceTime;
+  private final double errorRate;
+  private final ServerSocketChannel server;
+  private final Selector selector;
+  private final Thread thread;
+  private final PriorityQueue<Response> pending = new PriorityQueue<>();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private long sequence;
+  private volatile boolean closed;
+
+  /**
+   * Binds the server, which starts serving requests once the subclass calls {@link #start()}.
+   *
+   * @param name the name of the server thread.
+   * @param port the port to listen on, 0 for any free port.
+   * @param serviceTime the distribution of the service time of requests.
+   * @param errorRate the fraction of requests that fail, between 0 and 1.
+   */
+  protected EmbeddedServer(final String name,
+                           final int port,
+                           final ServiceTime serviceTime,
+                           final double errorRate) throws IOException
+  {
+    this.serviceTime = serviceTime;
+    this.errorRate = errorRate;
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(port), 1024);
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
+    thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Starts serving requests, to be called at the end of the constructor of subclasses.
+   */
+  protected final void start() {
+    thread.start();
+  }
+
+  /**
+   * @return the number of bytes of the complete request at the position of the buffer, or -1 if
+   *         the buffer does not hold a complete request yet.
+   */
+  protected abstract int requestLength(ByteBuffer in);
+
+  /**
+   * @param request a complete request.
+   * @param error whether the request must fail.
+   * @return the response to the request, or null to fail it by closing the connection.
+   */
+  protected abstract ByteBuffer response(ByteBuffer request, boolean error);
+
+  public int port() {
+    return server.socket().getLocalPort();
+  }
+
+  /**
+   * @return the number of requests received so far.
+   */
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  /**
+   * @return the number of requests failed on purpose so far.
+   */
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    selector.wakeup();
+    try {
+      thread.join();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    try {
+      while (!closed) {
+        select();
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+          } else {
+            final Connection connection = (Connection) key.attachment();
+            try {
+              if (key.isReadable()) {
+                read(connection);
+              }
+              if (key.isValid() && key.isWritable()) {
+                write(connection);
+              }
+            } catch (final IOException e) {
+              LOG.debug("Closing connection after error", e);
+              close(connection);
+            }
+          }
+        }
+        respond();
+      }
+    } catch (final IOException e) {
+      LOG.error("Embedded server failed", e);
+    } finally {
+      for (final SelectionKey key : selector.keys()) {
+        try {
+          key.channel().close();
+        } catch (final IOException e) {
+          LOG.debug("Failed to close channel", e);
+        }
+      }
+      try {
+        selector.close();
+      } catch (final IOException e) {
+        LOG.debug("Failed to close selector", e);
+      }
+    }
+  }
+
+  private void select() throws IOException {
+    final Response next = pending.peek();
+    if (next == null) {
+      selector.select();
+      return;
+    }
+    final long waitNanos = next.dueNanos - System.nanoTime();
+    if (waitNanos >= MIN_SELECT_NANOS) {
+      selector.select(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    } else {
+      // Selector timeouts have millisecond granularity, which is too coarse for short service times
+      if (waitNanos > 0) {
+        LockSupport.parkNanos(waitNanos);
+      }
+      selector.selectNow();
+    }
+  }
+
+  private void accept() throws IOException {
+    final SocketChannel channel = server.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+    key.attach(new Connection(channel, key));
+  }
+
+  private void read(final Connection connection) throws IOException {
+    if (connection.channel.read(connection.in) < 0) {
+      close(connection);
+      return;
+    }
+
+    final long arrivalNanos = System.nanoTime();
+    final ByteBuffer in = connection.in;
+    in.flip();
+    int length;
+    while ((length = requestLength(in)) >= 0) {
+      final ByteBuffer request = in.slice();
+      request.limit(length);
+      in.position(in.position() + length);
+
+      requests.increment();
+      final boolean error = errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+      if (error) {
+        errors.increment();
+      }
+      final long dueNanos = Math.max(arrivalNanos + serviceTime.serviceNanos(arrivalNanos), connection.lastDueNanos);
+      connection.lastDueNanos = dueNanos;
+      pending.add(new Response(dueNanos, sequence++, connection, response(request, error)));
+    }
+    in.compact();
+
+    if (!in.hasRemaining()) {
+      final ByteBuffer larger = ByteBuffer.allocate(in.capacity() * 2);
+      in.flip();
+      larger.put(in);
+      connection.in = larger;
+    }
+  }
+
+  private void respond() throws IOException {
+    final long now = System.nanoTime();
+    Response next;
+    while ((next = pending.peek()) != null && next.dueNanos - now <= 0) {
+      pending.poll();
+      final Connection connection = next.connection;
+      if (connection.closed) {
+        continue;
+      }
+      if (next.data == null) {
+        close(connection);
+        continue;
+      }
+      connection.out.add(next.data);
+      try {
+        write(connection);
+      } catch (final IOException e) {
+        LOG.debug("Closing connection after error", e);
+        close(connection);
+      }
+    }
+  }
+
+  private void write(final Connection connection) throws IOException {
+    ByteBuffer data;
+    while ((data = connection.out.peek()) != null) {
+      connection.channel.write(data);
+      if (data.hasRemaining()) {
+        connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return;
+      }
+      connection.out.poll();
+    }
+    connection.key.interestOps(SelectionKey.OP_READ);
+  }
+
+  private void close(final Connection connection) throws IOException {
+    connection.closed = true;
+    connection.key.cancel();
+    connection.channel.close();
+  }
+}
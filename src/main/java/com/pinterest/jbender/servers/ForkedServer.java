@@ -0,0 +1,100 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.servers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs an EmbeddedServer in a sibling JVM, so that its pauses and CPU use do not disturb the load
+ * tester (and the other way around).
+ */
+public class ForkedServer implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(ForkedServer.class);
+
+  private static final String PORT_PREFIX = "jbender-server-port ";
+
+  private final Process process;
+  private final int port;
+
+  /**
+   * Starts the child JVM and waits until the server listens.
+   *
+   * @param mainClass the main class of the server, for example HttpEchoServer.
+   * @param jvmOptions options for the child JVM, for example the heap size.
+   * @param args the arguments of the main class; the port must be 0 or free.
+   */
+  public ForkedServer(final Class<?> mainClass, final List<String> jvmOptions, final String... args) throws IOException {
+    final List<String> command = new ArrayList<>();
+    command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    command.addAll(jvmOptions);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(mainClass.getName());
+    command.addAll(Arrays.asList(args));
+    LOG.debug("Starting server JVM: {}", command);
+    process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+    final BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    String line;
+    while ((line = out.readLine()) != null && !line.startsWith(PORT_PREFIX)) {
+      System.out.println(line);
+    }
+    if (line == null) {
+      process.destroyForcibly();
+      throw new IOException("Server JVM exited before listening");
+    }
+    port = Integer.parseInt(line.substring(PORT_PREFIX.length()));
+
+    // Keep the pipe drained so that the child never blocks writing to it
+    final Thread drainer = new Thread(() -> {
+      try {
+        String l;
+        while ((l = out.readLine()) != null) {
+          System.out.println(l);
+        }
+      } catch (final IOException e) {
+        // The child is gone
+      }
+    }, "jbender-forked-server-output");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  public int port() {
+    return port;
+  }
+
+  @Override
+  public void close() {
+    process.destroyForcibly();
+  }
+
+  /**
+   * Tells the parent ForkedServer, if any, which port the server listens on.
+   */
+  static void announce(final EmbeddedServer server) {
+    System.out.println(PORT_PREFIX + server.port());
+    System.out.flush();
+  }
+}
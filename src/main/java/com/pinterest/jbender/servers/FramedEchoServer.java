@@ -0,0 +1,68 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.servers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An EmbeddedServer answering every frame with itself, where a frame is a 4-byte big-endian
+ * length followed by that many bytes, as with Thrift's framed transport.
+ *
+ * Failed requests have their connection closed, which clients see as a transport error.
+ */
+public class FramedEchoServer extends EmbeddedServer {
+  /**
+   * @param port the port to listen on, 0 for any free port.
+   * @param serviceTime the distribution of the service time of requests.
+   * @param errorRate the fraction of requests that fail, between 0 and 1.
+   */
+  public FramedEchoServer(final int port, final ServiceTime serviceTime, final double errorRate) throws IOException {
+    super("jbender-framed-echo-server", port, serviceTime, errorRate);
+    start();
+  }
+
+  @Override
+  protected int requestLength(final ByteBuffer in) {
+    if (in.remaining() < 4) {
+      return -1;
+    }
+    final int length = 4 + in.getInt(in.position());
+    return in.remaining() >= length ? length : -1;
+  }
+
+  @Override
+  protected ByteBuffer response(final ByteBuffer request, final boolean error) {
+    if (error) {
+      return null;
+    }
+    final ByteBuffer response = ByteBuffer.allocate(request.remaining());
+    response.put(request);
+    response.flip();
+    return response;
+  }
+
+  /**
+   * Runs a server, for example in a sibling JVM started with ForkedServer.
+   *
+   * Arguments: {@code <port> <service time> [<error rate>]}, see {@link ServiceTime#parse}.
+   */
+  public static void main(final String[] args) throws IOException, InterruptedException {
+    final double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+    try (final FramedEchoServer server =
+           new FramedEchoServer(Integer.parseInt(args[0]), ServiceTime.parse(args[1]), errorRate)) {
+      ForkedServer.announce(server);
+      Thread.currentThread().join();
+    }
+  }
+}
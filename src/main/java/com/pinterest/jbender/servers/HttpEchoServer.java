@@ -0,0 +1,114 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.servers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * An EmbeddedServer speaking HTTP/1.1 with keep-alive, that answers every request with its body.
+ *
+ * Failed requests are answered with an error status and an empty body.
+ */
+public class HttpEchoServer extends EmbeddedServer {
+  private static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+  private static final String CONTENT_LENGTH = "\r\ncontent-length:";
+
+  private final int errorStatus;
+
+  public HttpEchoServer(final int port, final ServiceTime serviceTime) throws IOException {
+    this(port, serviceTime, 0, 500);
+  }
+
+  /**
+   * @param port the port to listen on, 0 for any free port.
+   * @param serviceTime the distribution of the service time of requests.
+   * @param errorRate the fraction of requests that fail, between 0 and 1.
+   * @param errorStatus the status of failed requests.
+   */
+  public HttpEchoServer(final int port,
+                        final ServiceTime serviceTime,
+                        final double errorRate,
+                        final int errorStatus) throws IOException
+  {
+    super("jbender-http-echo-server", port, serviceTime, errorRate);
+    this.errorStatus = errorStatus;
+    start();
+  }
+
+  @Override
+  protected int requestLength(final ByteBuffer in) {
+    final int headerLength = headerLength(in);
+    if (headerLength < 0) {
+      return -1;
+    }
+    final int length = headerLength + contentLength(in, headerLength);
+    return in.remaining() >= length ? length : -1;
+  }
+
+  @Override
+  protected ByteBuffer response(final ByteBuffer request, final boolean error) {
+    final int headerLength = headerLength(request);
+    final int bodyLength = error ? 0 : request.remaining() - headerLength;
+    final String header = "HTTP/1.1 " + (error ? errorStatus + " Error" : "200 OK") + "\r\n" +
+                          "Content-Type: application/octet-stream\r\n" +
+                          "Content-Length: " + bodyLength + "\r\n\r\n";
+    final byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+    final ByteBuffer response = ByteBuffer.allocate(headerBytes.length + bodyLength);
+    response.put(headerBytes);
+    if (bodyLength > 0) {
+      request.position(request.position() + headerLength);
+      response.put(request);
+    }
+    response.flip();
+    return response;
+  }
+
+  private static int headerLength(final ByteBuffer in) {
+    final int start = in.position();
+    for (int i = start; i <= in.limit() - HEADER_END.length; i++) {
+      if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+        return i - start + HEADER_END.length;
+      }
+    }
+    return -1;
+  }
+
+  private static int contentLength(final ByteBuffer in, final int headerLength) {
+    final byte[] header = new byte[headerLength];
+    in.duplicate().get(header);
+    final String headers = new String(header, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+    final int i = headers.indexOf(CONTENT_LENGTH);
+    if (i < 0) {
+      return 0;
+    }
+    final int end = headers.indexOf('\r', i + CONTENT_LENGTH.length());
+    return Integer.parseInt(headers.substring(i + CONTENT_LENGTH.length(), end).trim());
+  }
+
+  /**
+   * Runs a server, for example in a sibling JVM started with ForkedServer.
+   *
+   * Arguments: {@code <port> <service time> [<error rate>]}, see {@link ServiceTime#parse}.
+   */
+  public static void main(final String[] args) throws IOException, InterruptedException {
+    final double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+    try (final HttpEchoServer server =
+           new HttpEchoServer(Integer.parseInt(args[0]), ServiceTime.parse(args[1]), errorRate, 500)) {
+      ForkedServer.announce(server);
+      Thread.currentThread().join();
+    }
+  }
+}
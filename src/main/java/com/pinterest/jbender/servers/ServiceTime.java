@@ -0,0 +1,103 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.servers;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distribution of the service time of an EmbeddedServer, that is how long after its arrival
+ * a request is answered (when the connection has no earlier request still in service).
+ */
+@FunctionalInterface
+public interface ServiceTime {
+  /**
+   * @param arrivalNanos the arrival time of the request, from System.nanoTime().
+   * @return the service time of the request in nanoseconds.
+   */
+  long serviceNanos(long arrivalNanos);
+
+  static ServiceTime constant(final long duration, final TimeUnit unit) {
+    final long nanos = unit.toNanos(duration);
+    return arrivalNanos -> nanos;
+  }
+
+  /**
+   * A lognormal service time: the median multiplied by e raised to a normal deviate of standard
+   * deviation sigma (for example 0.5 for a moderately long tail).
+   */
+  static ServiceTime lognormal(final long median, final TimeUnit unit, final double sigma) {
+    final long medianNanos = unit.toNanos(median);
+    return arrivalNanos -> (long) (medianNanos * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+  }
+
+  /**
+   * Answers with the slow service time with the given probability and the fast one otherwise,
+   * like a cache with a miss rate.
+   */
+  static ServiceTime bimodal(final long fast, final long slow, final TimeUnit unit, final double slowFraction) {
+    final long fastNanos = unit.toNanos(fast);
+    final long slowNanos = unit.toNanos(slow);
+    return arrivalNanos -> ThreadLocalRandom.current().nextDouble() < slowFraction ? slowNanos : fastNanos;
+  }
+
+  /**
+   * Adds periodic stalls to a service time: the server stops answering for the stall duration at
+   * the start of every period (like a stop-the-world GC), and requests arriving during a stall
+   * wait until its end.
+   */
+  static ServiceTime withStalls(final ServiceTime base, final long period, final long stall, final TimeUnit unit) {
+    final long periodNanos = unit.toNanos(period);
+    final long stallNanos = unit.toNanos(stall);
+    return arrivalNanos -> {
+      final long phase = Math.floorMod(arrivalNanos, periodNanos);
+      final long stalled = phase < stallNanos ? stallNanos - phase : 0;
+      return stalled + base.serviceNanos(arrivalNanos + stalled);
+    };
+  }
+
+  /**
+   * Parses a service time from a command-line specification, with durations in microseconds:
+   * {@code constant:<us>}, {@code lognormal:<median us>:<sigma>},
+   * {@code bimodal:<fast us>:<slow us>:<slow fraction>}, optionally followed by
+   * {@code +stalls:<period us>:<stall us>}.
+   */
+  static ServiceTime parse(final String spec) {
+    final String[] parts = spec.split("\\+stalls:", 2);
+    final String[] base = parts[0].split(":");
+    final ServiceTime serviceTime;
+    try {
+      switch (base[0]) {
+        case "constant":
+          serviceTime = constant(Long.parseLong(base[1]), TimeUnit.MICROSECONDS);
+          break;
+        case "lognormal":
+          serviceTime = lognormal(Long.parseLong(base[1]), TimeUnit.MICROSECONDS, Double.parseDouble(base[2]));
+          break;
+        case "bimodal":
+          serviceTime = bimodal(Long.parseLong(base[1]), Long.parseLong(base[2]), TimeUnit.MICROSECONDS,
+                                Double.parseDouble(base[3]));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown service time: " + spec);
+      }
+      if (parts.length == 1) {
+        return serviceTime;
+      }
+      final String[] stalls = parts[1].split(":");
+      return withStalls(serviceTime, Long.parseLong(stalls[0]), Long.parseLong(stalls[1]), TimeUnit.MICROSECONDS);
+    } catch (final ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid service time: " + spec, e);
+    }
+  }
+}
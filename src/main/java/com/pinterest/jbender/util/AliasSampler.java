@@ -0,0 +1,81 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Samples indexes with probabilities proportional to the given weights in constant time, using
+ * Vose's alias method.
+ */
+public final class AliasSampler {
+  private final double[] prob;
+  private final int[] alias;
+
+  public AliasSampler(final double[] weights) {
+    final int n = weights.length;
+    if (n == 0) {
+      throw new IllegalArgumentException("At least one weight is needed");
+    }
+
+    double total = 0;
+    for (final double w : weights) {
+      if (!(w >= 0) || Double.isInfinite(w)) {
+        throw new IllegalArgumentException("Invalid weight: " + w);
+      }
+      total += w;
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("At least one weight must be positive");
+    }
+
+    prob = new double[n];
+    alias = new int[n];
+
+    // Scale weights so that their average is 1, then pair each under-full slot with an over-full one
+    final double[] scaled = new double[n];
+    final Deque<Integer> small = new ArrayDeque<>();
+    final Deque<Integer> large = new ArrayDeque<>();
+    for (int i = 0; i < n; i++) {
+      scaled[i] = weights[i] * n / total;
+      (scaled[i] < 1.0 ? small : large).push(i);
+    }
+    while (!small.isEmpty() && !large.isEmpty()) {
+      final int s = small.pop();
+      final int l = large.pop();
+      prob[s] = scaled[s];
+      alias[s] = l;
+      scaled[l] = scaled[l] + scaled[s] - 1.0;
+      (scaled[l] < 1.0 ? small : large).push(l);
+    }
+    // Whatever is left is full, up to rounding errors
+    while (!large.isEmpty()) {
+      prob[large.pop()] = 1.0;
+    }
+    while (!small.isEmpty()) {
+      prob[small.pop()] = 1.0;
+    }
+  }
+
+  public int size() {
+    return prob.length;
+  }
+
+  public int sample(final Random rand) {
+    final double u = rand.nextDouble() * prob.length;
+    final int i = (int) u;
+    return u - i < prob[i] ? i : alias[i];
+  }
+}
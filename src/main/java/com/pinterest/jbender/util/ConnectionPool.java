@@ -84,4 +84,14 @@ public class ConnectionPool<T extends Closeable> {
 
     t.close();
   }
+
+  /**
+   * Closes the idle connections.
+   */
+  public void close() throws IOException {
+    T t;
+    while ((t = pool.tryReceive()) != null) {
+      t.close();
+    }
+  }
 }
@@ -0,0 +1,69 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.util;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Timeout;
+import co.paralleluniverse.strands.channels.ReceivePort;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receive port that stops providing values (as if closed) after a deadline, for example to end a
+ * load test after a given duration. Blocking receives never wait past the deadline.
+ */
+public class DeadlineReceivePort<T> implements ReceivePort<T> {
+  private final ReceivePort<T> delegate;
+  private final long deadlineNanos;
+
+  /**
+   * @param delegate the port providing values until the deadline.
+   * @param deadlineNanos the deadline, as a System#nanoTime value.
+   */
+  public DeadlineReceivePort(ReceivePort<T> delegate, long deadlineNanos) {
+    this.delegate = delegate;
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  @Override
+  public T receive() throws SuspendExecution, InterruptedException {
+    // Do not wait for the next value beyond the deadline
+    final long remainingNanos = deadlineNanos - System.nanoTime();
+    return remainingNanos <= 0 ? null : delegate.receive(remainingNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public T receive(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+    return isClosed() ? null : delegate.receive(timeout, unit);
+  }
+
+  @Override
+  public T receive(Timeout timeout) throws SuspendExecution, InterruptedException {
+    return isClosed() ? null : delegate.receive(timeout);
+  }
+
+  @Override
+  public T tryReceive() {
+    return isClosed() ? null : delegate.tryReceive();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @Override
+  public boolean isClosed() {
+    return System.nanoTime() - deadlineNanos >= 0 || delegate.isClosed();
+  }
+}
@@ -69,6 +69,6 @@ public class ListReceivePort<T> implements ReceivePort<T> {
 
   @Override
   public boolean isClosed() {
-    return false;
+    return cur >= total;
   }
 }
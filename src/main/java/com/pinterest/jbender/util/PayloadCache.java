@@ -0,0 +1,118 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.util;
+
+import co.paralleluniverse.strands.channels.Channels;
+import co.paralleluniverse.strands.channels.ReceivePort;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Serializes each distinct request once into a direct ByteBuffer, so that sending a request
+ * repeatedly costs no serialization nor copy in the load tester: executors write duplicates of the
+ * cached buffer straight to their sockets.
+ *
+ * Requests are told apart with equals and hashCode. Past the maximum number of entries, requests
+ * not already cached are serialized at every send, into heap buffers that are cheaper to allocate.
+ *
+ * @param <Req> the request type.
+ */
+public class PayloadCache<Req> {
+  private final Function<? super Req, byte[]> serializer;
+  private final boolean framed;
+  private final int maxEntries;
+  private final ConcurrentHashMap<Req, ByteBuffer> payloads = new ConcurrentHashMap<>();
+  private final LongAdder serializations = new LongAdder();
+
+  /**
+   * Caches up to 65536 unframed payloads.
+   *
+   * @param serializer serializes a request.
+   */
+  public PayloadCache(final Function<? super Req, byte[]> serializer) {
+    this(serializer, false, 65536);
+  }
+
+  /**
+   * @param serializer serializes a request.
+   * @param framed whether payloads start with their 4-byte big-endian length, as with Thrift's
+   *               framed transport (and FramedSocketRequestExecutor).
+   * @param maxEntries the maximum number of payloads cached.
+   */
+  public PayloadCache(final Function<? super Req, byte[]> serializer, final boolean framed, final int maxEntries) {
+    this.serializer = serializer;
+    this.framed = framed;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * @return the payload of a request, as a read-only buffer of its own that may be consumed.
+   */
+  public ByteBuffer payload(final Req request) {
+    ByteBuffer payload = payloads.get(request);
+    if (payload == null) {
+      final boolean cacheable = payloads.size() < maxEntries;
+      payload = serialize(request, cacheable);
+      if (cacheable) {
+        final ByteBuffer cached = payloads.putIfAbsent(request, payload);
+        if (cached != null) {
+          payload = cached;
+        }
+      }
+    }
+    return payload.duplicate();
+  }
+
+  /**
+   * A request source of payloads, for load tests whose executor takes ByteBuffers.
+   *
+   * @param requests the requests, closed to end the load test.
+   * @return the payloads of the requests, in order.
+   */
+  public ReceivePort<ByteBuffer> payloads(final ReceivePort<Req> requests) {
+    return Channels.map(requests, this::payload);
+  }
+
+  /**
+   * @return the number of payloads cached.
+   */
+  public int size() {
+    return payloads.size();
+  }
+
+  /**
+   * @return the number of requests serialized so far.
+   */
+  public long getSerializations() {
+    return serializations.sum();
+  }
+
+  private ByteBuffer serialize(final Req request, final boolean direct) {
+    final byte[] bytes = serializer.apply(request);
+    serializations.increment();
+    if (!direct && !framed) {
+      return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+    final int capacity = (framed ? 4 : 0) + bytes.length;
+    final ByteBuffer payload = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    if (framed) {
+      payload.putInt(bytes.length);
+    }
+    payload.put(bytes);
+    payload.flip();
+    return payload.asReadOnlyBuffer();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.util;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs errors at a bounded rate: at most a fixed number of errors are logged (with their stack
+ * trace) per second, the others are only counted and summarized in a single message once the
+ * second is over. This keeps logging from becoming a bottleneck when every request fails.
+ */
+public class RateLimitedLogger {
+  private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final Logger log;
+  private final int errorsPerSecond;
+  private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+  private final AtomicInteger logged = new AtomicInteger();
+  private final LongAdder suppressed = new LongAdder();
+
+  /**
+   * @param log the underlying logger.
+   * @param errorsPerSecond the maximal number of errors logged per second.
+   */
+  public RateLimitedLogger(final Logger log, final int errorsPerSecond) {
+    this.log = log;
+    this.errorsPerSecond = errorsPerSecond;
+  }
+
+  /**
+   * Logs an error with one argument, unless the limit for the current second is reached.
+   */
+  public void error(final String format, final Object arg, final Throwable t) {
+    final long now = System.nanoTime();
+    final long start = windowStart.get();
+    if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+      logged.set(0);
+      final long count = suppressed.sumThenReset();
+      if (count > 0) {
+        log.error("{} more errors not logged in the last {} ms", count, TimeUnit.NANOSECONDS.toMillis(now - start));
+      }
+    }
+
+    if (logged.incrementAndGet() <= errorsPerSecond) {
+      log.error(format, arg, t);
+    } else {
+      suppressed.increment();
+    }
+  }
+
+  /**
+   * @return the number of errors not logged so far in the current second.
+   */
+  public long suppressed() {
+    return suppressed.sum();
+  }
+}
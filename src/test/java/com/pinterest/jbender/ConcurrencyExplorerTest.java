@@ -0,0 +1,72 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.concurrent.Semaphore;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.util.ListReceivePort;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyExplorerTest {
+  /**
+   * A service that handles 4 requests at a time, 5ms each: throughput saturates at concurrency 4.
+   */
+  private static class CapacityRequestExecutor implements RequestExecutor<Integer, Void> {
+    private final Semaphore capacity = new Semaphore(4);
+
+    @Override
+    public Void execute(long nanoTime, Integer request) throws SuspendExecution, InterruptedException {
+      capacity.acquire();
+      try {
+        Strand.sleep(5);
+      } finally {
+        capacity.release();
+      }
+      return null;
+    }
+  }
+
+  @Test
+  public void testKnee() throws Exception {
+    ConcurrencyExplorer explorer = new ConcurrencyExplorer(1, 2.0, 64, TimeUnit.MILLISECONDS.toNanos(300), 0.1);
+    ConcurrencyExplorer.Result result = explorer.explore(
+        new ListReceivePort<>(Collections.singletonList(0), Integer.MAX_VALUE), new CapacityRequestExecutor());
+
+    // 1, 2, 4 grow; at least 8 and 16 plateau
+    assertTrue(result.levels.size() >= 5);
+    assertEquals(4, result.knee.concurrency);
+
+    // Past the knee, the extra requests in flight wait in the service
+    ConcurrencyExplorer.Level saturated = result.levels.get(3);
+    assertEquals(8, saturated.inFlight(), 1.5);
+    assertTrue(saturated.latency.getMean() > 1.5 * result.knee.latency.getMean());
+  }
+
+  @Test
+  public void testRequestsExhausted() throws Exception {
+    ConcurrencyExplorer explorer = new ConcurrencyExplorer(1, 2.0, 64, TimeUnit.MILLISECONDS.toNanos(100), 0.1);
+    ConcurrencyExplorer.Result result = explorer.explore(
+        new ListReceivePort<>(Collections.singletonList(0), 10), new CapacityRequestExecutor());
+
+    assertEquals(0, result.levels.size());
+    assertEquals(null, result.knee);
+  }
+}
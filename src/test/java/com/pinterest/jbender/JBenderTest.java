@@ -18,14 +18,30 @@ import co.paralleluniverse.strands.channels.Channel;
 import co.paralleluniverse.strands.channels.Channels;
 import com.google.common.collect.Sets;
 import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.PhaseHistogramRecorder;
+import com.pinterest.jbender.executors.AsyncRequestExecutor;
+import com.pinterest.jbender.executors.PhaseTimedRequestExecutor;
 import com.pinterest.jbender.executors.RequestExecutor;
 import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
 import com.pinterest.jbender.intervals.IntervalGenerator;
+import com.pinterest.jbender.util.ListReceivePort;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class JBenderTest {
   private static final class FakeRequestExecutor implements RequestExecutor<Integer, Integer> {
@@ -35,6 +51,22 @@ public class JBenderTest {
     }
   }
 
+  private static final class FakePhaseTimedRequestExecutor implements PhaseTimedRequestExecutor<Integer, Integer> {
+    private static final String[] PHASES = {"first", "second"};
+
+    @Override
+    public String[] phaseNames() {
+      return PHASES;
+    }
+
+    @Override
+    public Integer execute(long nanoTime, Integer request, long[] phaseNanos) throws SuspendExecution, InterruptedException {
+      phaseNanos[0] = request;
+      phaseNanos[1] = -1;
+      return request;
+    }
+  }
+
   private void assertEvents(Channel<TimingEvent<Integer>> eventCh, int start, int end) throws SuspendExecution, InterruptedException {
     Set<Integer> actual = Sets.newHashSetWithExpectedSize(end - start);
     Set<Integer> expected = Sets.newHashSetWithExpectedSize(end - start);
@@ -160,4 +192,164 @@ public class JBenderTest {
     JBender.loadTestConcurrency(1, 5, requestCh, executor, eventCh);
     assertEvents(eventCh, 5, 10);
   }
+
+  @Test
+  public void testLoadTestThroughputPhases() throws SuspendExecution, InterruptedException {
+    IntervalGenerator intervalGen = new ConstantIntervalGenerator(0);
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    FakePhaseTimedRequestExecutor executor = new FakePhaseTimedRequestExecutor();
+    PhaseHistogramRecorder recorder = new PhaseHistogramRecorder(executor.phaseNames(), 1000, 3, 1);
+
+    requests(requestCh, 10);
+    JBender.loadTestThroughput(intervalGen, 0, requestCh, executor, eventCh);
+
+    TimingEvent<Integer> t;
+    while ((t = eventCh.receive()) != null) {
+      assertArrayEquals(new long[] {t.response, -1}, t.phaseNanos);
+      recorder.record(t);
+    }
+    assertEquals(10, recorder.histogram("first").getTotalCount());
+    assertEquals(0, recorder.histogram("second").getTotalCount());
+  }
+
+  @Test
+  public void testLoadTestThroughputAsync() throws SuspendExecution, InterruptedException {
+    IntervalGenerator intervalGen = new ConstantIntervalGenerator(0);
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    AsyncRequestExecutor<Integer, Integer> executor =
+        (nanoTime, request) -> CompletableFuture.supplyAsync(() -> request, ForkJoinPool.commonPool());
+
+    requests(requestCh, 10);
+    JBender.loadTestThroughputAsync(intervalGen, 5, requestCh, executor, eventCh);
+    assertEvents(eventCh, 5, 10);
+  }
+
+  @Test
+  public void testLoadTestThroughputAsyncFailure() throws SuspendExecution, InterruptedException {
+    IntervalGenerator intervalGen = new ConstantIntervalGenerator(0);
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(1);
+    AsyncRequestExecutor<Integer, Integer> executor = (nanoTime, request) -> {
+      CompletableFuture<Integer> f = new CompletableFuture<>();
+      f.completeExceptionally(new IllegalStateException());
+      return f;
+    };
+
+    requests(requestCh, 3);
+    new Fiber<Void>(() -> {
+      JBender.loadTestThroughputAsync(intervalGen, 0, requestCh, executor, eventCh);
+    }).start();
+
+    int count = 0;
+    TimingEvent<Integer> t;
+    while ((t = eventCh.receive()) != null) {
+      assertEquals(IllegalStateException.class, t.exception.getClass());
+      count++;
+    }
+    assertEquals(3, count);
+  }
+
+  @Test
+  public void testLoadTestThroughputMix() throws SuspendExecution, InterruptedException {
+    IntervalGenerator intervalGen = new ConstantIntervalGenerator(0);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    RequestExecutor<Integer, Integer> executor = new FakeRequestExecutor();
+    RequestMix<Integer> mix = new RequestMix<Integer>()
+        .add("read", 3, new ListReceivePort<>(Arrays.asList(1, 2, 3)), executor)
+        .add("write", 1, new ListReceivePort<>(Arrays.asList(-1)), executor);
+
+    JBender.loadTestThroughputMix(intervalGen, 0, mix, eventCh);
+
+    Map<String, Integer> counts = new HashMap<>();
+    TimingEvent<Integer> t;
+    while ((t = eventCh.receive()) != null) {
+      assertEquals(t.response < 0 ? "write" : "read", t.label);
+      counts.merge(t.label, 1, Integer::sum);
+    }
+    assertEquals(Integer.valueOf(3), counts.get("read"));
+    assertEquals(Integer.valueOf(1), counts.get("write"));
+  }
+
+  @Test
+  public void testLoadTestThroughputMixIdleSource() throws SuspendExecution, InterruptedException {
+    IntervalGenerator intervalGen = new ConstantIntervalGenerator(0);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    Channel<Integer> idleCh = Channels.newChannel(-1);
+    RequestExecutor<Integer, Integer> executor = new FakeRequestExecutor();
+    RequestMix<Integer> mix = new RequestMix<Integer>()
+        .add("idle", 100, idleCh, executor)
+        .add("read", 1, new ListReceivePort<>(Arrays.asList(1, 2, 3)), executor);
+
+    new Fiber<Void>(() -> {
+      JBender.loadTestThroughputMix(intervalGen, 0, mix, eventCh);
+    }).start();
+
+    // An open source without requests does not hold up the others
+    for (int i = 0; i < 3; i++) {
+      TimingEvent<Integer> t = eventCh.receive(5, TimeUnit.SECONDS);
+      assertEquals("read", t.label);
+    }
+    idleCh.close();
+    assertNull(eventCh.receive(5, TimeUnit.SECONDS));
+    assertTrue(eventCh.isClosed());
+  }
+
+  @Test
+  public void testLoadTestClosedLoop() throws SuspendExecution, InterruptedException {
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    RequestExecutor<Integer, Integer> executor = new FakeRequestExecutor();
+
+    requests(requestCh, 30);
+    long start = System.nanoTime();
+    JBender.loadTestClosedLoop(3, new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(10)), null,
+                               requestCh, executor, eventCh);
+    // Each user makes about 10 requests, thinking 10ms after each
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+    assertEvents(eventCh, 0, 30);
+  }
+
+  @Test
+  public void testLoadTestClosedLoopResumeKeepsThinkTime() throws Exception {
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    LoadControl control = new LoadControl(1);
+    List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+    RequestExecutor<Integer, Integer> executor = (nanoTime, request) -> {
+      starts.add(System.nanoTime());
+      return request;
+    };
+
+    Fiber<Void> loadTest = new Fiber<Void>(() -> {
+      JBender.loadTestClosedLoop(control, new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(300)), null,
+                                 new ListReceivePort<>(Arrays.asList(1, 2)), executor, eventCh, null);
+    }).start();
+    while (starts.isEmpty()) {
+      Thread.sleep(1);
+    }
+    control.pause();
+    Thread.sleep(50);
+    control.resume();
+    loadTest.join();
+
+    // The user finishes thinking after being woken up
+    assertEquals(2, starts.size());
+    assertTrue(starts.get(1) - starts.get(0) >= TimeUnit.MILLISECONDS.toNanos(300));
+  }
+
+  @Test
+  public void testLoadTestClosedLoopWarmup() throws SuspendExecution, InterruptedException {
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    RequestExecutor<Integer, Integer> executor = new FakeRequestExecutor();
+    WarmupDetector warmup = new WarmupDetector(TimeUnit.MILLISECONDS.toNanos(10), 3, 0.5, TimeUnit.MILLISECONDS.toNanos(50));
+
+    requests(requestCh, 100);
+    JBender.loadTestClosedLoop(2, new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(1)), warmup,
+                               requestCh, executor, eventCh);
+    assertTrue(warmup.isWarm());
+    assertTrue(warmup.getWarmupRequests() > 0);
+    assertEvents(eventCh, (int) warmup.getWarmupRequests(), 100);
+  }
 }
@@ -0,0 +1,193 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import org.junit.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoadControlTest {
+  private static final class SlowRequestExecutor implements RequestExecutor<Integer, Integer> {
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Override
+    public Integer execute(long nanoTime, Integer request) throws SuspendExecution, InterruptedException {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        Strand.sleep(5);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+      return request;
+    }
+  }
+
+  private static Channel<Integer> requests() {
+    // Never closed, the load tests are stopped through their control
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    for (int i = 0; i < 100000; ++i) {
+      requestCh.trySend(i);
+    }
+    return requestCh;
+  }
+
+  private static Fiber<Void> recordCount(Channel<TimingEvent<Integer>> eventCh, AtomicInteger count) {
+    return Recorder.record(eventCh, e -> count.incrementAndGet());
+  }
+
+  private static void awaitCount(AtomicInteger count, int expected) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (count.get() < expected) {
+      assertTrue("count " + count.get() + " < " + expected, System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void testRateChangeAndStop() throws Exception {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(TimeUnit.SECONDS.toNanos(10)));
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    AtomicInteger count = new AtomicInteger();
+    Fiber<Void> recorder = recordCount(eventCh, count);
+    Fiber<Void> loadTest = new Fiber<Void>(() -> {
+      JBender.loadTestThroughput(control, 0, requests(), new SlowRequestExecutor(), eventCh, null);
+    }).start();
+
+    // The change through JMX must wake the dispatcher waiting for a 10 second interval
+    Thread.sleep(50);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = control.register("testRateChangeAndStop");
+    try {
+      server.setAttribute(name, new Attribute("Rate", 2000.0));
+      assertEquals(2000.0, (Double) server.getAttribute(name, "Rate"), 0);
+      Thread.sleep(200);
+      server.invoke(name, "stop", null, null);
+    } finally {
+      server.unregisterMBean(name);
+    }
+
+    loadTest.join(1, TimeUnit.SECONDS);
+    recorder.join(1, TimeUnit.SECONDS);
+    assertTrue("count " + count.get(), count.get() > 50 && count.get() < 1000);
+  }
+
+  @Test
+  public void testPauseResume() throws Exception {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(1)));
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    AtomicInteger count = new AtomicInteger();
+    Fiber<Void> recorder = recordCount(eventCh, count);
+    Fiber<Void> loadTest = new Fiber<Void>(() -> {
+      JBender.loadTestThroughput(control, 0, requests(), new SlowRequestExecutor(), eventCh, null);
+    }).start();
+
+    awaitCount(count, 5);
+    control.pause();
+    Thread.sleep(50);
+    int paused = count.get();
+    Thread.sleep(100);
+    assertEquals(paused, count.get());
+
+    control.resume();
+    awaitCount(count, paused + 1);
+
+    control.stop();
+    loadTest.join(1, TimeUnit.SECONDS);
+    recorder.join(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testConcurrencyResize() throws Exception {
+    LoadControl control = new LoadControl(1);
+    SlowRequestExecutor executor = new SlowRequestExecutor();
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    AtomicInteger count = new AtomicInteger();
+    Fiber<Void> recorder = recordCount(eventCh, count);
+    Fiber<Void> loadTest = new Fiber<Void>(() -> {
+      JBender.loadTestConcurrency(control, 0, requests(), executor, eventCh, null);
+    }).start();
+
+    awaitCount(count, 5);
+    assertEquals(1, executor.maxInFlight.get());
+    control.setConcurrency(4);
+    awaitCount(count, count.get() + 20);
+    assertEquals(4, executor.maxInFlight.get());
+
+    control.setConcurrency(2);
+    awaitCount(count, count.get() + 10);
+    executor.maxInFlight.set(0);
+    awaitCount(count, count.get() + 10);
+    assertEquals(2, executor.maxInFlight.get());
+
+    control.stop();
+    loadTest.join(1, TimeUnit.SECONDS);
+    recorder.join(1, TimeUnit.SECONDS);
+    assertEquals(0, executor.inFlight.get());
+  }
+
+  @Test
+  public void testPacer() throws Exception {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(0));
+    control.setPacer(new Pacer(TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(1), true));
+
+    // Waits within the batch window are not waited for
+    assertFalse(control.sleep(TimeUnit.MICROSECONDS.toNanos(500)));
+
+    long start = System.nanoTime();
+    assertFalse(control.sleep(TimeUnit.MILLISECONDS.toNanos(5)));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(5));
+
+    // Changes interrupt spinning too
+    control.setPacer(new Pacer(TimeUnit.SECONDS.toNanos(10), 0, true));
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      executor.schedule(control::pause, 20, TimeUnit.MILLISECONDS);
+      start = System.nanoTime();
+      assertTrue(control.sleep(TimeUnit.SECONDS.toNanos(5)));
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPacerNegativeSpin() {
+    new Pacer(-1, 0, false);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPacerNegativeBatch() {
+    new Pacer(0, -1, false);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import com.pinterest.jbender.events.recording.HdrHistogramRecorder;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import com.pinterest.jbender.util.ListReceivePort;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class PartitionedLoadTestTest {
+  /**
+   * Counts requests that run on the carrier threads of another partition than their own.
+   */
+  private static class AffinityRequestExecutor implements RequestExecutor<Integer, Void> {
+    final AtomicInteger misplaced = new AtomicInteger();
+
+    @Override
+    public Void execute(long nanoTime, Integer partition) throws SuspendExecution, InterruptedException {
+      if (!Thread.currentThread().getName().contains("jbender-partition-" + partition + "-worker-")) {
+        misplaced.incrementAndGet();
+      }
+      return null;
+    }
+  }
+
+  private static HdrHistogramRecorder merge(List<HdrHistogramRecorder> shards) {
+    HdrHistogramRecorder merged = new HdrHistogramRecorder(new Histogram(3600000000L, 3), 1000);
+    for (HdrHistogramRecorder shard : shards) {
+      merged.add(shard);
+    }
+    return merged;
+  }
+
+  @Test
+  public void testThroughput() throws Exception {
+    AffinityRequestExecutor executor = new AffinityRequestExecutor();
+    try (PartitionedLoadTest loadTest = new PartitionedLoadTest(4, 1)) {
+      List<HdrHistogramRecorder> shards = loadTest.loadTestThroughput(
+          qps -> new ConstantIntervalGenerator((long) (1e9 / qps)), 20000, 8,
+          i -> new ListReceivePort<>(Collections.singletonList(i), 102), executor,
+          () -> new HdrHistogramRecorder(new Histogram(3600000000L, 3), 1000));
+
+      assertEquals(4, shards.size());
+      for (HdrHistogramRecorder shard : shards) {
+        assertEquals(100, shard.histogram.getTotalCount());
+      }
+      assertEquals(400, merge(shards).histogram.getTotalCount());
+      assertEquals(0, executor.misplaced.get());
+    }
+  }
+
+  @Test
+  public void testConcurrency() throws Exception {
+    AffinityRequestExecutor executor = new AffinityRequestExecutor();
+    try (PartitionedLoadTest loadTest = new PartitionedLoadTest(3, 2)) {
+      List<HdrHistogramRecorder> shards = loadTest.loadTestConcurrency(
+          7, 0, i -> new ListReceivePort<>(Collections.singletonList(i), 50), executor,
+          () -> new HdrHistogramRecorder(new Histogram(3600000000L, 3), 1000));
+
+      assertEquals(150, merge(shards).histogram.getTotalCount());
+      assertEquals(0, executor.misplaced.get());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrencyBelowPartitions() throws Exception {
+    AffinityRequestExecutor executor = new AffinityRequestExecutor();
+    try (PartitionedLoadTest loadTest = new PartitionedLoadTest(4, 1)) {
+      List<HdrHistogramRecorder> shards = loadTest.loadTestConcurrency(
+          2, 0, i -> new ListReceivePort<>(Collections.singletonList(i), 50), executor,
+          () -> new HdrHistogramRecorder(new Histogram(3600000000L, 3), 1000));
+
+      // Partitions left without concurrency do not run
+      assertEquals(2, shards.size());
+      assertEquals(100, merge(shards).histogram.getTotalCount());
+      assertEquals(0, executor.misplaced.get());
+    }
+  }
+}
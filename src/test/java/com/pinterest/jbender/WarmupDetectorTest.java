@@ -0,0 +1,61 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WarmupDetectorTest {
+  @Test
+  public void testSteadyState() throws Exception {
+    WarmupDetector warmup = new WarmupDetector(TimeUnit.MILLISECONDS.toNanos(20), 3, 0.5, TimeUnit.SECONDS.toNanos(10));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!warmup.isWarm() && System.nanoTime() < deadline) {
+      warmup.record(TimeUnit.MILLISECONDS.toNanos(1));
+      Thread.sleep(1);
+    }
+    assertTrue(warmup.isWarm());
+    assertTrue(warmup.getWarmupRequests() > 0);
+
+    // A request started cold still counts once warmup is over
+    long requests = warmup.getWarmupRequests();
+    warmup.record(TimeUnit.MILLISECONDS.toNanos(1));
+    assertEquals(requests + 1, warmup.getWarmupRequests());
+  }
+
+  @Test
+  public void testUnstableLatency() throws Exception {
+    WarmupDetector warmup = new WarmupDetector(TimeUnit.MILLISECONDS.toNanos(5), 3, 0.1, TimeUnit.MILLISECONDS.toNanos(200));
+    long duration = TimeUnit.MILLISECONDS.toNanos(1);
+    long start = System.nanoTime();
+    while (!warmup.isWarm()) {
+      // Latency keeps alternating between windows, so steady state is never reached
+      long window = (System.nanoTime() - start) / TimeUnit.MILLISECONDS.toNanos(5);
+      warmup.record(window % 2 == 0 ? duration : 4 * duration);
+      Thread.sleep(1);
+    }
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  public void testNoRequests() {
+    WarmupDetector warmup = new WarmupDetector();
+    assertFalse(warmup.isWarm());
+    assertEquals(0, warmup.getWarmupRequests());
+  }
+}
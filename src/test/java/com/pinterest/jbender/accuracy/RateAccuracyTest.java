@@ -0,0 +1,57 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.accuracy;
+
+import com.pinterest.jbender.intervals.ExponentialIntervalGenerator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateAccuracyTest {
+  @Test
+  public void testMeasure() throws Exception {
+    final RateAccuracy.Result result =
+        new RateAccuracy().measure("exponential", new ExponentialIntervalGenerator(2000), 2000, 2000);
+    assertEquals(2000, result.samples);
+    assertEquals(2000, result.jitter.getTotalCount());
+    assertTrue(result.toString(), result.accuracy() > 0.8 && result.accuracy() < 1.2);
+    assertTrue(result.toString(), result.ksStatistic > 0 && result.ksStatistic < 1);
+  }
+
+  @Test
+  public void testResult() {
+    // The intended schedule is 100us apart, and every request after the first measured one starts 10us late
+    final long[] startNanos = {0, 0, 110000, 210000, 310000};
+    final long[] intervals = {100000, 100000, 100000, 100000, 100000};
+    final RateAccuracy.Result result = RateAccuracy.result("constant", 10000, startNanos, intervals, 1);
+    assertEquals(4, result.samples);
+    assertEquals(3e9 / 310000, result.achievedRate, 1e-6);
+    assertEquals(10000, result.jitter.getMaxValue(), 10);
+    assertEquals(1.0 / 3, result.ksStatistic, 1e-9);
+  }
+
+  @Test
+  public void testKolmogorovSmirnov() {
+    final long[] a = new long[1000];
+    final long[] b = new long[1000];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = i;
+      b[i] = i + 1000;
+    }
+    assertEquals(0, RateAccuracy.ksStatistic(a, a), 0);
+    assertEquals(1, RateAccuracy.ksPValue(0, a.length, a.length), 0);
+    assertEquals(1, RateAccuracy.ksStatistic(a, b), 0);
+    assertEquals(0, RateAccuracy.ksPValue(1, a.length, b.length), 1e-12);
+  }
+}
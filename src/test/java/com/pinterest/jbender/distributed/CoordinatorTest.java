@@ -0,0 +1,77 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.distributed;
+
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoordinatorTest {
+  private static final RequestExecutor<Integer, Integer> FAIL_ODD = (nanoTime, request) -> {
+    if (request % 2 != 0) {
+      throw new IllegalStateException("odd");
+    }
+    return request;
+  };
+
+  private static Channel<Integer> requests(int count) {
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    for (int i = 0; i < count; ++i) {
+      requestCh.trySend(i);
+    }
+    return requestCh;
+  }
+
+  @Test
+  public void testDistributedLoadTest() throws Exception {
+    ExecutorService workers = Executors.newFixedThreadPool(2);
+    try (Coordinator coordinator = new Coordinator(0)) {
+      List<Future<Void>> done = new ArrayList<>();
+      for (String name : Arrays.asList("a", "b")) {
+        Worker<Integer, Integer> worker = new Worker<>(
+            "localhost", coordinator.port(), name,
+            qps -> new ConstantIntervalGenerator((long) (1e9 / qps)), requests(100000), FAIL_ODD);
+        done.add(workers.submit(() -> {
+          worker.run();
+          return null;
+        }));
+      }
+
+      // 2 workers at 1,000 requests per second each for half a second
+      DistributedResult result = coordinator.run(2, 2000, 100, 500, 1000, 100);
+      for (Future<Void> f : done) {
+        f.get();
+      }
+
+      long count = result.histogram.getTotalCount();
+      assertEquals(2, result.workers.size());
+      assertTrue("count " + count, count > 500 && count <= 1002);
+      assertTrue("errors " + result.errorCount, result.errorCount >= count / 2 - 1 && result.errorCount <= count / 2 + 1);
+      assertTrue(result.throughput() > 1000 && result.throughput() < 2500);
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.distributed;
+
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ForkTest {
+  public static final class Child {
+    public static void main(String[] args) throws Exception {
+      new Worker<Integer, Integer>(args[0], Integer.parseInt(args[1]), args[2],
+                                   qps -> new ConstantIntervalGenerator((long) (1e9 / qps)),
+                                   assignment -> requests(assignment.workerIndex, assignment.workerCount),
+                                   (nanoTime, request) -> request).run();
+    }
+
+    private static Channel<Integer> requests(int index, int count) {
+      Channel<Integer> requestCh = Channels.newChannel(-1);
+      for (int i = index; i < 100000; i += count) {
+        requestCh.trySend(i);
+      }
+      return requestCh;
+    }
+  }
+
+  @Test
+  public void testFork() throws Exception {
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    Fork fork = new Fork(Child.class, 2, Collections.singletonList("-Xmx64m"), new HistogramLogWriter(log));
+    DistributedResult result = fork.run(1000, 500, 1000, 100);
+
+    // Fresh JVMs load and instrument classes at the start, so the throughput is only bounded above
+    long count = result.histogram.getTotalCount();
+    assertTrue("count " + count, count > 0 && count <= 502);
+    assertEquals(0, result.errorCount);
+
+    HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(log.toByteArray()));
+    Set<String> tags = new HashSet<>();
+    long logged = 0;
+    for (EncodableHistogram h = reader.nextIntervalHistogram(); h != null; h = reader.nextIntervalHistogram()) {
+      tags.add(h.getTag());
+      logged += ((org.HdrHistogram.Histogram) h).getTotalCount();
+    }
+    assertEquals(count, logged);
+    assertEquals(new HashSet<>(result.workers), tags);
+  }
+}
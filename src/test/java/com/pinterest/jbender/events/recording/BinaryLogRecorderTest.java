@@ -0,0 +1,72 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryLogRecorderTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testWriteRollAndRead() throws IOException {
+    String prefix = new File(folder.getRoot(), "run").getPath();
+    long base = System.nanoTime();
+    // Room for 10 records per file
+    try (BinaryLogRecorder recorder = new BinaryLogRecorder(prefix, BinaryLogFormat.HEADER_SIZE + 10 * BinaryLogFormat.RECORD_SIZE)) {
+      for (int i = 0; i < 25; ++i) {
+        long start = base + TimeUnit.SECONDS.toNanos(i);
+        String label = i % 2 == 0 ? "even" : "odd";
+        Exception exc = i % 5 == 0 ? new IllegalStateException() : null;
+        recorder.record(new TimingEvent<>(label, start, 0, (i + 1) * 1000L, 100, exc == null ? i : null, exc, null));
+      }
+    }
+    assertTrue(new File(BinaryLogFormat.file(prefix, 2)).exists());
+
+    BinaryLogReader reader = new BinaryLogReader(prefix);
+    List<long[]> records = new ArrayList<>();
+    assertEquals(25, reader.read((intended, start, duration, outcome, labelId) ->
+        records.add(new long[] {intended, start, duration, outcome, labelId})));
+
+    long[] first = records.get(0);
+    long[] last = records.get(24);
+    assertEquals(first[1] - 100, first[0]);
+    assertEquals(TimeUnit.SECONDS.toNanos(24), last[1] - first[1]);
+    assertEquals(25000, last[2]);
+    assertEquals("java.lang.IllegalStateException", reader.exceptionName((int) first[3]));
+    assertEquals(0, records.get(1)[3]);
+    assertEquals("even", reader.label((int) first[4]));
+    assertEquals("odd", reader.label((int) records.get(1)[4]));
+
+    // Even requests started from the 10th second (10, 12, ..., 24), of which 10, 20 failed
+    BinaryLogTool.Slice slice = new BinaryLogTool.Slice(first[0] + TimeUnit.SECONDS.toNanos(10), Long.MAX_VALUE,
+                                                        reader.labelId("even"), true, 1, false);
+    reader.read(slice);
+    assertEquals(6, slice.successes.getTotalCount());
+    assertEquals(2, slice.failures.getTotalCount());
+    assertEquals(11000, slice.failures.getMinValue(), 10);
+    assertEquals(21000, slice.failures.getMaxValue(), 10);
+  }
+}
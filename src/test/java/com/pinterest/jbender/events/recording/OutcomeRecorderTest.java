@@ -0,0 +1,51 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+
+public class OutcomeRecorderTest {
+  @Test
+  public void testOutcomes() {
+    OutcomeRecorder recorder = new OutcomeRecorder(new Histogram(3), new Histogram(3), 1);
+    recorder.record(new TimingEvent<>(0, 100, 0, "ok"));
+    recorder.record(new TimingEvent<>(0, 100, 0, new BasicHttpResponse(HttpVersion.HTTP_1_1, 404, "Not Found")));
+    recorder.record(new TimingEvent<>(0, 2000, 0, new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Unavailable")));
+    recorder.record(new TimingEvent<>(0, 10, 0, new ExecutionException(new ConnectException())));
+    recorder.record(new TimingEvent<>(0, 1000, 0, new SocketTimeoutException()));
+    recorder.record(new TimingEvent<>(0, 10, 0, new IllegalStateException()));
+    recorder.record(new TimingEvent<>(0, 10, 0, new IllegalStateException()));
+
+    assertEquals(1, recorder.count(OutcomeClassifier.OK));
+    assertEquals(1, recorder.count("http_404"));
+    assertEquals(1, recorder.count("http_503"));
+    assertEquals(1, recorder.count(OutcomeClassifier.CONNECT));
+    assertEquals(1, recorder.count(OutcomeClassifier.TIMEOUT));
+    assertEquals(2, recorder.count("IllegalStateException"));
+    assertEquals(6, recorder.counts().size());
+    assertEquals(2, recorder.successes.getTotalCount());
+    assertEquals(100, recorder.successes.getMaxValue());
+    assertEquals(5, recorder.failures.getTotalCount());
+    assertEquals(2000, recorder.failures.getMaxValue(), 2);
+  }
+}
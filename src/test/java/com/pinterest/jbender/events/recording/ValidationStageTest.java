@@ -0,0 +1,72 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.events.recording;
+
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ValidationStageTest {
+  private static OutcomeRecorder run(ValidationStage<Integer> stage) throws Exception {
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(16, Channels.OverflowPolicy.BLOCK, false, false);
+    OutcomeRecorder recorder = new OutcomeRecorder(new Histogram(3), new Histogram(3), 1);
+    @SuppressWarnings("unchecked")
+    Recorder<Integer> r = recorder;
+    Recorder.record(stage.validate(eventCh), r);
+
+    for (int i = 0; i < 100; i++) {
+      eventCh.send(new TimingEvent<>(0, 100, 0, i));
+    }
+    eventCh.send(new TimingEvent<>(0, 10, 0, new IllegalStateException()));
+    eventCh.close();
+
+    for (int i = 0; i < 500 && recorder.successes.getTotalCount() + recorder.failures.getTotalCount() < 101; i++) {
+      Thread.sleep(10);
+    }
+    return recorder;
+  }
+
+  @Test
+  public void testValidateAll() throws Exception {
+    ValidationStage<Integer> stage = new ValidationStage<>(i -> {
+      if (i % 10 == 0) {
+        throw new IllegalArgumentException("bad response " + i);
+      }
+    }, 1.0);
+    OutcomeRecorder recorder = run(stage);
+
+    assertEquals(100, stage.getValidated());
+    assertEquals(10, stage.getFailed());
+    assertEquals(90, recorder.count(OutcomeClassifier.OK));
+    assertEquals(10, recorder.count(OutcomeClassifier.VALIDATION));
+    assertEquals(1, recorder.count("IllegalStateException"));
+  }
+
+  @Test
+  public void testValidateSample() throws Exception {
+    ValidationStage<Integer> stage = new ValidationStage<>(i -> {
+      if (i % 2 == 1) {
+        throw new AssertionError();
+      }
+    }, 0.25, 2, 8, null);
+    OutcomeRecorder recorder = run(stage);
+
+    assertEquals(25, stage.getValidated());
+    assertEquals(stage.getFailed(), recorder.count(OutcomeClassifier.VALIDATION));
+    assertEquals(100 - stage.getFailed(), recorder.count(OutcomeClassifier.OK));
+  }
+}
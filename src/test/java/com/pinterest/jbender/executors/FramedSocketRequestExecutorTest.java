@@ -0,0 +1,81 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.JBender;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.OutcomeRecorder;
+import com.pinterest.jbender.events.recording.Recorder;
+import com.pinterest.jbender.servers.FramedEchoServer;
+import com.pinterest.jbender.servers.ServiceTime;
+import com.pinterest.jbender.util.ListReceivePort;
+import com.pinterest.jbender.util.PayloadCache;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class FramedSocketRequestExecutorTest {
+  @SuppressWarnings("unchecked")
+  private static OutcomeRecorder loadTest(FramedEchoServer server, PayloadCache<String> cache) throws Exception {
+    OutcomeRecorder recorder = new OutcomeRecorder(new Histogram(3), new Histogram(3), 1);
+    try (FramedSocketRequestExecutor executor =
+             new FramedSocketRequestExecutor(new InetSocketAddress("localhost", server.port()), 4, 5000)) {
+      Channel<TimingEvent<ByteBuffer>> eventCh = Channels.newChannel(1024, Channels.OverflowPolicy.BLOCK, false, true);
+      Fiber<Void> recording = Recorder.record(eventCh, (Recorder<ByteBuffer>) recorder, e -> {
+        if (e.isSuccess) {
+          assertEquals("message " + e.response.remaining(), StandardCharsets.UTF_8.decode(e.response).toString());
+        }
+      });
+      new Fiber<Void>(() -> {
+        JBender.loadTestConcurrency(4, 0, cache.payloads(new ListReceivePort<>(Arrays.asList("message 9", "message 10"), 200)),
+                                    executor, eventCh);
+      }).start().join();
+      recording.join();
+    }
+    return recorder;
+  }
+
+  @Test
+  public void testCachedPayloads() throws Exception {
+    PayloadCache<String> cache = new PayloadCache<>(s -> s.getBytes(StandardCharsets.UTF_8), true, 16);
+    try (FramedEchoServer server = new FramedEchoServer(0, ServiceTime.constant(100, TimeUnit.MICROSECONDS), 0)) {
+      OutcomeRecorder recorder = loadTest(server, cache);
+
+      assertEquals(200, recorder.successes.getTotalCount());
+      assertEquals(200, server.getRequests());
+      assertEquals(2, cache.getSerializations());
+    }
+  }
+
+  @Test
+  public void testConnectionClosed() throws Exception {
+    PayloadCache<String> cache = new PayloadCache<>(s -> s.getBytes(StandardCharsets.UTF_8), true, 16);
+    try (FramedEchoServer server = new FramedEchoServer(0, ServiceTime.constant(0, TimeUnit.MICROSECONDS), 1)) {
+      OutcomeRecorder recorder = loadTest(server, cache);
+
+      // Connections closed by the server are not reused
+      assertEquals(200, recorder.failures.getTotalCount());
+      assertEquals(200, server.getErrors());
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.executors.http.FiberApacheHttpClientRequestExecutor;
+import com.pinterest.jbender.servers.HttpEchoServer;
+import com.pinterest.jbender.servers.ServiceTime;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HedgingRequestExecutorTest {
+  // Executes requests slowly or with a failure for the first attempt only
+  private static final class FirstAttemptRequestExecutor implements RequestExecutor<Integer, Integer> {
+    private final AtomicInteger calls = new AtomicInteger();
+    private final boolean fail;
+
+    FirstAttemptRequestExecutor(boolean fail) {
+      this.fail = fail;
+    }
+
+    @Override
+    public Integer execute(long nanoTime, Integer request) throws SuspendExecution, InterruptedException {
+      if (calls.getAndIncrement() == 0) {
+        if (fail) {
+          throw new IllegalStateException("first attempt");
+        }
+        Strand.sleep(10, TimeUnit.SECONDS);
+      }
+      return request;
+    }
+  }
+
+  private static Integer execute(RequestExecutor<Integer, Integer> executor) throws ExecutionException, InterruptedException {
+    return new Fiber<>(() -> executor.execute(System.nanoTime(), 42)).start().get();
+  }
+
+  @Test
+  public void testHedgeWins() throws ExecutionException, InterruptedException, SuspendExecution {
+    Channel<TimingEvent<Integer>> attemptCh = Channels.newChannel(-1);
+    HedgingRequestExecutor<Integer, Integer> executor = new HedgingRequestExecutor<>(
+      new FirstAttemptRequestExecutor(false), TimeUnit.MILLISECONDS.toNanos(10), 2, 0, attemptCh);
+
+    long start = System.nanoTime();
+    assertEquals(Integer.valueOf(42), execute(executor));
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    assertEquals(1, executor.hedges());
+    assertEquals(1, executor.hedgeWins());
+
+    // Both the hedge and the cancelled first attempt are reported
+    TimingEvent<Integer> first = attemptCh.receive();
+    TimingEvent<Integer> second = attemptCh.receive();
+    assertTrue(first.isSuccess);
+    assertTrue(first.waitNanos >= TimeUnit.MILLISECONDS.toNanos(10));
+    assertTrue(!second.isSuccess);
+  }
+
+  @Test
+  public void testRetry() throws ExecutionException, InterruptedException {
+    HedgingRequestExecutor<Integer, Integer> executor = new HedgingRequestExecutor<>(
+      new FirstAttemptRequestExecutor(true), 0, 2, 0, null);
+
+    assertEquals(Integer.valueOf(42), execute(executor));
+    assertEquals(2, executor.attempts());
+    assertEquals(1, executor.retries());
+    assertEquals(0, executor.hedges());
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void testNoAttemptsLeft() throws ExecutionException, InterruptedException {
+    execute(new HedgingRequestExecutor<>(new FirstAttemptRequestExecutor(true), 0, 1, 0, null));
+  }
+
+  @Test
+  public void testHttpLoserAborted() throws Exception {
+    // After the request warming up the client, the first attempt and the request holding the other
+    // connection are slow
+    AtomicInteger arrivals = new AtomicInteger();
+    ServiceTime serviceTime = arrivalNanos -> {
+      int arrival = arrivals.getAndIncrement();
+      return arrival == 1 || arrival == 3 ? TimeUnit.SECONDS.toNanos(10) : 0;
+    };
+    try (HttpEchoServer server = new HttpEchoServer(0, serviceTime);
+         FiberApacheHttpClientRequestExecutor http = new FiberApacheHttpClientRequestExecutor(2)) {
+      String uri = "http://localhost:" + server.port() + "/";
+      new Fiber<>(() -> http.execute(System.nanoTime(), new HttpGet(uri))).start().get();
+
+      HedgingRequestExecutor<HttpRequestBase, CloseableHttpResponse> executor = new HedgingRequestExecutor<>(
+        http, TimeUnit.MILLISECONDS.toNanos(50), 2, 0, null);
+      new Fiber<>(() -> executor.execute(System.nanoTime(), new HttpGet(uri))).start().get();
+      assertEquals(1, executor.hedgeWins());
+
+      // With one connection held by a slow request, another request only gets the second one if the
+      // loser did not keep it until the server answers
+      new Fiber<>(() -> http.execute(System.nanoTime(), new HttpGet(uri))).start();
+      while (arrivals.get() < 4) {
+        Thread.sleep(1);
+      }
+      long start = System.nanoTime();
+      CloseableHttpResponse response = new Fiber<>(() -> http.execute(System.nanoTime(), new HttpGet(uri))).start().get();
+      assertEquals(200, response.getStatusLine().getStatusCode());
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+  }
+}
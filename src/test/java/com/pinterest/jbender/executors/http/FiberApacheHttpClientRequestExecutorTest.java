@@ -0,0 +1,58 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.http;
+
+import co.paralleluniverse.fibers.Fiber;
+import com.pinterest.jbender.servers.HttpEchoServer;
+import com.pinterest.jbender.servers.ServiceTime;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FiberApacheHttpClientRequestExecutorTest {
+  @Test
+  public void testPhases() throws Exception {
+    try (HttpEchoServer server = new HttpEchoServer(0, ServiceTime.constant(20, TimeUnit.MILLISECONDS));
+         FiberApacheHttpClientRequestExecutor<HttpPost> executor = new FiberApacheHttpClientRequestExecutor<>(1)) {
+      for (int i = 0; i < 2; i++) {
+        final String body = "hello " + i;
+        final long[] phaseNanos = new long[executor.phaseNames().length];
+        final HttpPost request = new HttpPost("http://localhost:" + server.port() + "/echo");
+        request.setEntity(new StringEntity(body, ContentType.TEXT_PLAIN));
+        try (CloseableHttpResponse response = new Fiber<CloseableHttpResponse>(
+            () -> executor.execute(System.nanoTime(), request, phaseNanos)).start().get()) {
+          assertEquals(200, response.getStatusLine().getStatusCode());
+          assertEquals(body, EntityUtils.toString(response.getEntity()));
+        }
+        for (long nanos : phaseNanos) {
+          assertTrue(nanos >= 0);
+        }
+        assertTrue(phaseNanos[HttpPhases.FIRST_BYTE] >= TimeUnit.MILLISECONDS.toNanos(20));
+        if (i == 0) {
+          assertTrue(phaseNanos[HttpPhases.CONNECT] > 0);
+        } else {
+          // The second request reuses the pooled connection
+          assertEquals(0, phaseNanos[HttpPhases.CONNECT]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.executors.scenario;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.JBender;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.LabeledHdrHistogramRecorder;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScenarioRequestExecutorTest {
+  private static final RequestExecutor<String, String> LOGIN = (nanoTime, user) -> "token-" + user;
+  private static final RequestExecutor<String, Integer> FEED = (nanoTime, token) -> {
+    if (token.endsWith("bad")) {
+      throw new IllegalStateException("bad token");
+    }
+    return 3;
+  };
+  private static final RequestExecutor<Integer, Integer> PIN = (nanoTime, pin) -> pin;
+
+  private static final Scenario<String> SCENARIO = (user, session) -> {
+    final String token = session.step("login", LOGIN, user);
+    final int pins = session.step("feed", FEED, token);
+    for (int i = 0; i < pins; i++) {
+      session.step("pin", PIN, i);
+    }
+  };
+
+  @Test
+  public void testSessions() throws SuspendExecution, InterruptedException {
+    Channel<String> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Void>> eventCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Object>> stepCh = Channels.newChannel(-1);
+
+    new Fiber<Void>(() -> {
+      requestCh.send("alice");
+      requestCh.send("bad");
+      requestCh.close();
+    }).start();
+    JBender.loadTestThroughput(new ConstantIntervalGenerator(0), 0, requestCh,
+        new ScenarioRequestExecutor<>(SCENARIO, stepCh), eventCh);
+    stepCh.close();
+
+    LabeledHdrHistogramRecorder recorder = new LabeledHdrHistogramRecorder(() -> new Histogram(3), 1);
+    TimingEvent<Object> step;
+    while ((step = stepCh.receive()) != null) {
+      recorder.record(step);
+    }
+    assertEquals(2, recorder.recorder("login").histogram.getTotalCount());
+    assertEquals(2, recorder.recorder("feed").histogram.getTotalCount());
+    assertEquals(1, recorder.recorder("feed").errorCount);
+    assertEquals(3, recorder.recorder("pin").histogram.getTotalCount());
+    assertNull(recorder.recorder(null));
+
+    int sessions = 0;
+    int failed = 0;
+    TimingEvent<Void> e;
+    while ((e = eventCh.receive()) != null) {
+      sessions++;
+      failed += e.isSuccess ? 0 : 1;
+    }
+    assertEquals(2, sessions);
+    assertEquals(1, failed);
+  }
+
+  @Test
+  public void testWarmupSessions() throws SuspendExecution, InterruptedException {
+    Channel<String> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Void>> eventCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Object>> stepCh = Channels.newChannel(-1);
+
+    new Fiber<Void>(() -> {
+      requestCh.send("warmup");
+      requestCh.send("alice");
+      requestCh.close();
+    }).start();
+    JBender.loadTestThroughput(new ConstantIntervalGenerator(0), 1, requestCh,
+        new ScenarioRequestExecutor<>(SCENARIO, stepCh), eventCh);
+    stepCh.close();
+
+    // Only the steps of the measured session are sent
+    int steps = 0;
+    while (stepCh.receive() != null) {
+      steps++;
+    }
+    assertEquals(5, steps);
+    assertTrue(eventCh.receive().isSuccess);
+    assertNull(eventCh.receive());
+  }
+}
@@ -0,0 +1,106 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import com.pinterest.jbender.JBender;
+import com.pinterest.jbender.LoadControl;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeneratorDiagnosticsTest {
+  @Test
+  public void testHealthyRun() throws Exception {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(1)));
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    GeneratorDiagnostics diagnostics = new GeneratorDiagnostics(eventCh, control);
+    Fiber<Void> recorder = Recorder.record(eventCh, diagnostics::record);
+    for (int i = 0; i < 200; ++i) {
+      requestCh.trySend(i);
+    }
+    requestCh.close();
+
+    new Fiber<Void>(() -> {
+      JBender.loadTestThroughput(control, 0, requestCh, (nanoTime, request) -> request, eventCh, null);
+    }).start().join();
+    recorder.join();
+
+    GeneratorDiagnostics.Report report = diagnostics.report();
+    assertTrue(report.toString(), report.dispatchedRate > 0);
+    assertTrue(report.toString(), report.carrierCpu >= 0);
+    assertFalse(report.toString(), report.reasons.stream().anyMatch(r -> r.startsWith("scheduler queue")));
+  }
+
+  @Test
+  public void testDispatchWindow() throws Exception {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(2)));
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    GeneratorDiagnostics diagnostics = new GeneratorDiagnostics(null, control);
+    for (int i = 0; i < 50; ++i) {
+      requestCh.trySend(i);
+    }
+    requestCh.close();
+
+    // Idle time before and after the load test does not count
+    Thread.sleep(200);
+    new Fiber<Void>(() -> {
+      JBender.loadTestThroughput(control, 0, requestCh, (nanoTime, request) -> request, eventCh, null);
+    }).start().join();
+    Thread.sleep(200);
+
+    GeneratorDiagnostics.Report report = diagnostics.report();
+    assertEquals(report.toString(), 500, report.dispatchedRate, 150);
+  }
+
+  @Test
+  public void testIntervalGeneratorTarget() {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(1)));
+    GeneratorDiagnostics diagnostics = new GeneratorDiagnostics(null, control);
+    for (int i = 0; i < 100; ++i) {
+      diagnostics.record(new TimingEvent<>(0, 1000, TimeUnit.MILLISECONDS.toNanos(50), i));
+    }
+
+    GeneratorDiagnostics.Report report = diagnostics.report();
+    assertEquals(1000, report.targetRate, 0.001);
+    assertTrue(report.toString(), report.reasons.stream().anyMatch(r -> r.startsWith("dispatched rate")));
+  }
+
+  @Test
+  public void testGeneratorBound() {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(0));
+    control.setRate(1000000);
+    GeneratorDiagnostics diagnostics = new GeneratorDiagnostics(null, control);
+    for (int i = 0; i < 100; ++i) {
+      diagnostics.record(new TimingEvent<>(0, 1000, TimeUnit.MILLISECONDS.toNanos(50), i));
+    }
+
+    GeneratorDiagnostics.Report report = diagnostics.report();
+    assertTrue(report.isGeneratorBound());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(50), report.scheduleLagMaxNanos, TimeUnit.MILLISECONDS.toNanos(1));
+    assertTrue(report.toString(), report.reasons.stream().anyMatch(r -> r.startsWith("schedule lag")));
+    assertTrue(report.toString(), report.reasons.stream().anyMatch(r -> r.startsWith("dispatched rate")));
+    assertTrue(report.toString(), report.toString().contains("GENERATOR-BOUND"));
+  }
+}
@@ -0,0 +1,134 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.channels.Channel;
+import co.paralleluniverse.strands.channels.Channels;
+import co.paralleluniverse.strands.concurrent.CountDownLatch;
+import com.pinterest.jbender.JBender;
+import com.pinterest.jbender.LoadControl;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.events.recording.Recorder;
+import com.pinterest.jbender.executors.RequestExecutor;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GuardrailsTest {
+  private static final class FailingRequestExecutor implements RequestExecutor<Integer, Integer> {
+    @Override
+    public Integer execute(long nanoTime, Integer request) throws SuspendExecution, InterruptedException {
+      throw new IllegalStateException("down");
+    }
+  }
+
+  private static final class HangingRequestExecutor implements RequestExecutor<Integer, Integer> {
+    private final CountDownLatch released;
+
+    HangingRequestExecutor(CountDownLatch released) {
+      this.released = released;
+    }
+
+    @Override
+    public Integer execute(long nanoTime, Integer request) throws SuspendExecution, InterruptedException {
+      released.await();
+      return request;
+    }
+  }
+
+  @Test
+  public void testAbortOnErrorRate() throws Exception {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(1)));
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    for (int i = 0; i < 100000; ++i) {
+      requestCh.trySend(i);
+    }
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+
+    try (MetricsRecorder metrics = new MetricsRecorder(control, 50)) {
+      Guardrails guardrails = new Guardrails(metrics, control, 5, Guardrail.errorRateAbove(0.5));
+      Fiber<Void> recorder = Recorder.record(eventCh, metrics::record);
+
+      // The request channel is never closed: only the guardrail can end the load test
+      new Fiber<Void>(() -> {
+        JBender.loadTestThroughput(control, 0, requestCh, new FailingRequestExecutor(), eventCh, null);
+      }).start().join(5, TimeUnit.SECONDS);
+      recorder.join(1, TimeUnit.SECONDS);
+
+      assertTrue(guardrails.tripped(), guardrails.tripped().startsWith("error rate 100.00%"));
+      assertEquals("guardrail: " + guardrails.tripped(), control.getStopReason());
+      assertTrue(metrics.getRequests() < 100000);
+    }
+  }
+
+  @Test
+  public void testAbortOnHangingTarget() throws Exception {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(TimeUnit.MILLISECONDS.toNanos(1)));
+    Channel<Integer> requestCh = Channels.newChannel(-1);
+    for (int i = 0; i < 100000; ++i) {
+      requestCh.trySend(i);
+    }
+    Channel<TimingEvent<Integer>> eventCh = Channels.newChannel(-1);
+    CountDownLatch released = new CountDownLatch(1);
+    HangingRequestExecutor executor = new HangingRequestExecutor(released);
+
+    try (MetricsRecorder metrics = new MetricsRecorder(control, 50)) {
+      Guardrails guardrails = new Guardrails(metrics, control, 5, Guardrail.achievedRateBelow(0.5));
+      Fiber<Void> recorder = Recorder.record(eventCh, metrics::record);
+      Fiber<Void> loadTest = new Fiber<Void>(() -> {
+        JBender.loadTestThroughput(control, 0, requestCh, executor, eventCh, null);
+      }).start();
+
+      // No request completes, the guardrail trips on the requests dispatched
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (!control.isStopped()) {
+        assertTrue("guardrail did not trip", System.nanoTime() < deadline);
+        Thread.sleep(5);
+      }
+      assertTrue(guardrails.tripped(), guardrails.tripped().startsWith("achieved rate 0.0"));
+      assertEquals(0, metrics.getRequests());
+
+      released.countDown();
+      loadTest.join(5, TimeUnit.SECONDS);
+      recorder.join(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testLatencyGuardrail() {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(0));
+    try (MetricsRecorder metrics = new MetricsRecorder(control, 3600000)) {
+      Guardrails guardrails = new Guardrails(metrics, control, 10,
+                                             Guardrail.latencyAbove(99, 10, TimeUnit.MILLISECONDS));
+      for (int i = 0; i < 5; ++i) {
+        metrics.record(new TimingEvent<>(0, TimeUnit.MILLISECONDS.toNanos(20), 0, i));
+      }
+      metrics.roll();
+      assertNull("too few requests", guardrails.tripped());
+
+      for (int i = 0; i < 100; ++i) {
+        metrics.record(new TimingEvent<>(0, TimeUnit.MILLISECONDS.toNanos(i < 95 ? 1 : 20), 0, i));
+      }
+      metrics.roll();
+      assertTrue(guardrails.tripped(), guardrails.tripped().startsWith("p99.0 latency"));
+      assertTrue(control.isStopped());
+    }
+  }
+}
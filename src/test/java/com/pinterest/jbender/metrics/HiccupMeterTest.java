@@ -0,0 +1,63 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HiccupMeterTest {
+  private static TimingEvent<Integer> event(long startNanos, long durationNanos) {
+    return new TimingEvent<>(null, startNanos, 0, durationNanos, 0, 0, null, null);
+  }
+
+  @Test
+  public void testStalledNanos() throws InterruptedException {
+    try (HiccupMeter meter = new HiccupMeter(TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.HOURS.toNanos(1))) {
+      meter.addStall(1000, 2000);
+      meter.addStall(5000, 6000);
+
+      assertEquals(0, meter.stalledNanos(0, 1000));
+      assertEquals(500, meter.stalledNanos(1500, 3000));
+      assertEquals(1000, meter.stalledNanos(1500, 5500));
+      assertEquals(2000, meter.stalledNanos(0, 10000));
+      assertEquals(0, meter.stalledNanos(6000, 10000));
+
+      Thread.sleep(20);
+      assertTrue(meter.histogram().getTotalCount() > 0);
+    }
+  }
+
+  @Test
+  public void testHiccupRecorder() {
+    try (HiccupMeter meter = new HiccupMeter(TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.HOURS.toNanos(1))) {
+      meter.addStall(1000, 2000);
+      HiccupRecorder recorder = new HiccupRecorder(meter, new Histogram(3), new Histogram(3), 1);
+      recorder.record(event(0, 500));
+      recorder.record(event(500, 3000));
+      recorder.record(event(3000, 3000));
+
+      assertEquals(1, recorder.stalledCount);
+      assertEquals(1000, recorder.stalledNanos);
+      assertEquals(3000, recorder.raw.getMaxValue(), 3);
+      assertEquals(3000, recorder.corrected.getMaxValue(), 3);
+      assertEquals(2000, recorder.corrected.getValueAtPercentile(50), 2);
+      assertEquals(3000, recorder.raw.getValueAtPercentile(50), 3);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.metrics;
+
+import com.pinterest.jbender.LoadControl;
+import com.pinterest.jbender.events.TimingEvent;
+import com.pinterest.jbender.intervals.ConstantIntervalGenerator;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Scanner;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRecorderTest {
+  @Test
+  public void testWindowMetrics() throws IOException {
+    LoadControl control = new LoadControl(new ConstantIntervalGenerator(0));
+    try (MetricsRecorder metrics = new MetricsRecorder(control, 3600000)) {
+      for (int i = 1; i <= 100; ++i) {
+        metrics.record(new TimingEvent<>(0, i * 1000000L, i * 1000L, i));
+      }
+      metrics.record(new TimingEvent<Integer>(0, 1000000L, 0, new TimeoutException()));
+      metrics.record(new TimingEvent<Integer>(0, 1000000L, 0, new IOException()));
+      metrics.record(new TimingEvent<Integer>(0, 1000000L, 0, new IOException()));
+      metrics.roll();
+
+      assertEquals(103, metrics.getRequests());
+      assertEquals(3, metrics.getErrors());
+      assertEquals(2L, (long) metrics.getErrorsByClass().get("java.io.IOException"));
+      assertEquals(1L, (long) metrics.getErrorsByClass().get("java.util.concurrent.TimeoutException"));
+      assertEquals(100, metrics.getLatencyMax() / 1000000);
+      assertEquals(99, metrics.getLatencyP99() / 1000000);
+      assertEquals(100, metrics.getDispatcherLagMax() / 1000);
+      assertTrue(metrics.getAchievedRate() > 0);
+      assertEquals(0, metrics.getOfferedRate(), 0);
+      assertEquals(0, metrics.getInFlight());
+
+      try (PrometheusEndpoint endpoint = new PrometheusEndpoint(metrics, 0);
+           InputStream in = new URL("http://localhost:" + endpoint.port() + "/metrics").openStream()) {
+        String text = new Scanner(in, "UTF-8").useDelimiter("\\A").next();
+        assertTrue(text, text.contains("jbender_requests_total 103\n"));
+        assertTrue(text, text.contains("jbender_errors_total{class=\"java.io.IOException\"} 2\n"));
+        assertTrue(text, text.contains("# TYPE jbender_latency_seconds summary\n"));
+        assertTrue(text, text.contains("jbender_latency_seconds{quantile=\"1\"} 0.100"));
+      }
+    }
+  }
+
+  @Test
+  public void testLabelEscaping() {
+    assertEquals("java.io.IOException", PrometheusEndpoint.escapeLabelValue("java.io.IOException"));
+    assertEquals("a\\\\b\\\"c\\nd", PrometheusEndpoint.escapeLabelValue("a\\b\"c\nd"));
+  }
+}
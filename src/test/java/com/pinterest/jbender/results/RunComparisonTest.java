@@ -0,0 +1,120 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.results;
+
+import com.pinterest.jbender.events.TimingEvent;
+import org.HdrHistogram.Histogram;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RunComparisonTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static RunResult run(String name, double latencyFactor, int requestsPerInterval, long seed) {
+    Random random = new Random(seed);
+    List<Histogram> intervals = new ArrayList<>();
+    for (int i = 0; i < 30; ++i) {
+      Histogram h = new Histogram(3);
+      h.setStartTimeStamp(i * 1000L);
+      h.setEndTimeStamp((i + 1) * 1000L);
+      for (int r = 0; r < requestsPerInterval; ++r) {
+        h.recordValue((long) (latencyFactor * (1000 + 100 * random.nextGaussian() + (random.nextInt(100) == 0 ? 5000 : 0))));
+      }
+      intervals.add(h);
+    }
+    return new RunResult(name, 0, 30000, 0, 1000, Collections.singletonMap("build", name), intervals);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    RunResult result = run("base", 1, 100, 1);
+    Path path = folder.getRoot().toPath().resolve("base.hlog.gz");
+    result.save(path);
+
+    RunResult loaded = RunResult.load(path);
+    assertEquals("base", loaded.name);
+    assertEquals("base", loaded.metadata.get("build"));
+    assertEquals(1000, loaded.scale);
+    assertEquals(30, loaded.intervals.size());
+    assertEquals(3000, loaded.requestCount());
+    assertEquals(100, loaded.throughput(), 0.001);
+    assertEquals(result.histogram().getValueAtPercentile(99), loaded.histogram().getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testNoRegression() {
+    List<RunComparison.Row> rows = new RunComparison(0.1).compare(run("base", 1, 100, 1), run("cand", 1, 100, 2));
+    assertEquals(RunComparison.DEFAULT_PERCENTILES.length + 1, rows.size());
+    assertFalse(rows.toString(), RunComparison.hasRegression(rows));
+    for (RunComparison.Row row : rows) {
+      assertTrue(row.toString(), row.lower <= row.ratio && row.ratio <= row.upper);
+    }
+  }
+
+  @Test
+  public void testRegression() {
+    List<RunComparison.Row> rows = new RunComparison(0.1).compare(run("base", 1, 100, 1), run("cand", 1.5, 50, 2));
+    assertTrue(rows.get(0).toString(), rows.get(0).regression);
+    assertTrue(rows.get(0).lower > 1.4);
+    RunComparison.Row throughput = rows.get(rows.size() - 1);
+    assertEquals("throughput", throughput.metric);
+    assertTrue(throughput.toString(), throughput.regression);
+  }
+
+  @Test
+  public void testRunRecorder() {
+    RunRecorder recorder = new RunRecorder(1000, 1000);
+    for (int i = 0; i < 10; ++i) {
+      recorder.record(new TimingEvent<>(0, 1000000L, 0, i));
+    }
+    RunResult result = recorder.result("run", Collections.emptyMap());
+    assertEquals(10, result.requestCount());
+    assertEquals(1000, result.histogram().getMaxValue(), 1);
+  }
+
+  @Test
+  public void testRunRecorderIntervals() throws InterruptedException {
+    // Requests completing every 100ms for 3 seconds, all received at once long after they ran
+    RunRecorder recorder = new RunRecorder(1000, 1000);
+    long startNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(10);
+    for (int i = 0; i < 30; ++i) {
+      long requestStartNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(100 * i);
+      recorder.record(new TimingEvent<>(null, requestStartNanos, 0, 1000000L, 0, i, null, null));
+    }
+
+    RunResult result = recorder.result("run", Collections.emptyMap());
+    assertEquals(3, result.intervals.size());
+    for (Histogram interval : result.intervals) {
+      assertEquals(10, interval.getTotalCount());
+    }
+    assertEquals(2901, result.durationMillis);
+
+    // Building the result later changes nothing
+    Thread.sleep(50);
+    assertEquals(result.throughput(), recorder.result("run", Collections.emptyMap()).throughput(), 0);
+  }
+}
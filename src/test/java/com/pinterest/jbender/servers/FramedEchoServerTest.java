@@ -0,0 +1,69 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.servers;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FramedEchoServerTest {
+  @Test
+  public void testPipelinedFrames() throws Exception {
+    try (final FramedEchoServer server = new FramedEchoServer(0, ServiceTime.lognormal(1, TimeUnit.MILLISECONDS, 0.5), 0);
+         final Socket socket = new Socket("localhost", server.port())) {
+      final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      for (int i = 0; i < 100; i++) {
+        final byte[] frame = ("frame " + i).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(frame.length);
+        out.write(frame);
+      }
+      out.flush();
+
+      // Responses come back in order even though their service times differ
+      final DataInputStream in = new DataInputStream(socket.getInputStream());
+      for (int i = 0; i < 100; i++) {
+        final byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        assertArrayEquals(("frame " + i).getBytes(StandardCharsets.UTF_8), frame);
+      }
+      assertEquals(100, server.getRequests());
+    }
+  }
+
+  @Test(expected = EOFException.class)
+  public void testErrorClosesConnection() throws Exception {
+    try (final FramedEchoServer server = new FramedEchoServer(0, ServiceTime.constant(0, TimeUnit.MILLISECONDS), 1);
+         final Socket socket = new Socket("localhost", server.port())) {
+      final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      out.writeInt(1);
+      out.write(42);
+      out.flush();
+      new DataInputStream(socket.getInputStream()).readInt();
+    }
+  }
+
+  @Test
+  public void testStalls() {
+    final ServiceTime serviceTime = ServiceTime.parse("constant:100+stalls:10000:2000");
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(100), serviceTime.serviceNanos(TimeUnit.MICROSECONDS.toNanos(5000)));
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(1600), serviceTime.serviceNanos(TimeUnit.MICROSECONDS.toNanos(20500)));
+  }
+}
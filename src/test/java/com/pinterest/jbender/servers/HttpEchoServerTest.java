@@ -0,0 +1,82 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.servers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpEchoServerTest {
+  private static HttpURLConnection post(final int port, final String body) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/echo").openConnection();
+    connection.setDoOutput(true);
+    try (final OutputStream out = connection.getOutputStream()) {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    return connection;
+  }
+
+  private static String read(final InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) >= 0) {
+      out.write(buffer, 0, n);
+    }
+    in.close();
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testEchoAfterServiceTime() throws Exception {
+    try (final HttpEchoServer server = new HttpEchoServer(0, ServiceTime.constant(50, TimeUnit.MILLISECONDS))) {
+      for (int i = 0; i < 3; i++) {
+        final long start = System.nanoTime();
+        final HttpURLConnection connection = post(server.port(), "hello " + i);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("hello " + i, read(connection.getInputStream()));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+      }
+      assertEquals(3, server.getRequests());
+    }
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    try (final HttpEchoServer server = new HttpEchoServer(0, ServiceTime.constant(0, TimeUnit.MILLISECONDS), 1, 503)) {
+      final HttpURLConnection connection = post(server.port(), "hello");
+      assertEquals(503, connection.getResponseCode());
+      assertEquals(1, server.getErrors());
+    }
+  }
+
+  @Test
+  public void testForked() throws Exception {
+    try (final ForkedServer server = new ForkedServer(HttpEchoServer.class, Collections.emptyList(), "0", "constant:1000")) {
+      final HttpURLConnection connection = post(server.port(), "forked");
+      assertEquals(200, connection.getResponseCode());
+      assertEquals("forked", read(connection.getInputStream()));
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AliasSamplerTest {
+  @Test
+  public void testDistribution() {
+    double[] weights = {70, 25, 5, 0};
+    AliasSampler sampler = new AliasSampler(weights);
+    Random rand = new Random(42);
+
+    int n = 1000000;
+    int[] counts = new int[weights.length];
+    for (int i = 0; i < n; i++) {
+      counts[sampler.sample(rand)]++;
+    }
+
+    assertEquals(0.70, counts[0] / (double) n, 0.005);
+    assertEquals(0.25, counts[1] / (double) n, 0.005);
+    assertEquals(0.05, counts[2] / (double) n, 0.005);
+    assertEquals(0, counts[3]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoPositiveWeight() {
+    new AliasSampler(new double[] {0, 0});
+  }
+}
@@ -0,0 +1,59 @@
+/*
+Copyright 2014 Pinterest.com
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+    http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package com.pinterest.jbender.util;
+
+import co.paralleluniverse.strands.channels.ReceivePort;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadCacheTest {
+  @Test
+  public void testSerializesOnce() throws Exception {
+    PayloadCache<String> cache = new PayloadCache<>(s -> s.getBytes(StandardCharsets.UTF_8), true, 16);
+    ReceivePort<ByteBuffer> payloads = cache.payloads(new ListReceivePort<>(Arrays.asList("a", "bc"), 100));
+
+    for (int i = 0; i < 100; i++) {
+      ByteBuffer payload = payloads.receive();
+      assertTrue(payload.isDirect());
+      assertTrue(payload.isReadOnly());
+      int length = payload.getInt();
+      assertEquals(i % 2 == 0 ? 1 : 2, length);
+      assertEquals(length, payload.remaining());
+      // Consuming a payload leaves the cached one untouched
+      payload.position(payload.limit());
+    }
+    assertNull(payloads.receive());
+    assertEquals(2, cache.size());
+    assertEquals(2, cache.getSerializations());
+  }
+
+  @Test
+  public void testMaxEntries() {
+    PayloadCache<Integer> cache = new PayloadCache<>(i -> new byte[i], false, 2);
+    for (int i = 0; i < 10; i++) {
+      ByteBuffer payload = cache.payload(i % 4);
+      assertEquals(i % 4, payload.remaining());
+      // Payloads that are not cached are not worth a direct buffer
+      assertEquals(i % 4 < 2, payload.isDirect());
+    }
+    assertEquals(2, cache.size());
+    assertEquals(2 + 2 * 2, cache.getSerializations());
+  }
+}